@@ -0,0 +1,83 @@
+package com.app;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Footprint of the threaded nodes under each {@link ExecutionMode}. Starts
+ * {@code --nodes} nodes without a UI, lets them run for {@code --duration}
+ * milliseconds and reports the peak live thread count and resident memory.
+ * Run one mode per JVM so RSS numbers are not polluted by earlier runs:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.app.ExecutionBenchmark --exec=platform --nodes=1000
+ * java -cp benchmarks/target/benchmarks.jar com.app.ExecutionBenchmark --exec=shared --nodes=10000
+ * </pre>
+ */
+public class ExecutionBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.parse(args);
+        if (!Options.given(args, "log-level")) options.logLevel = EventLog.Level.OFF;
+        if (!Options.given(args, "duration")) options.durationMs = 10_000;
+        if (!Options.given(args, "think-min")) options.thinkMinMs = 500;
+        if (!Options.given(args, "think-max")) options.thinkMaxMs = 1000;
+        if (!Options.given(args, "hold-min")) options.holdMinMs = 20;
+        if (!Options.given(args, "hold-max")) options.holdMaxMs = 50;
+        // About one request per think interval across the whole cluster: enough to
+        // exercise CS timers without the O(N) broadcast dominating large runs
+        if (!Options.given(args, "request-probability")) options.requestProbability = 1.0 / options.nodes;
+        Node.configure(options);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long rssBefore = residentKb();
+        long started = System.nanoTime();
+
+        List<Node> nodes = new ArrayList<>(options.nodes);
+        for (int i = 0; i < options.nodes; i++) {
+            nodes.add(Node.push(null));
+        }
+        nodes.forEach(Node::start);
+        long startupMs = (System.nanoTime() - started) / 1_000_000;
+
+        int peakThreads = 0;
+        long deadline = System.nanoTime() + options.durationMs * 1_000_000L;
+        while (System.nanoTime() < deadline) {
+            peakThreads = Math.max(peakThreads, threads.getThreadCount());
+            Thread.sleep(100);
+        }
+        long rssAfter = residentKb();
+
+        nodes.forEach(Node::shutdown);
+
+        System.out.printf("mode=%s nodes=%d startupMs=%d peakThreads=%d rssBeforeKb=%d rssAfterKb=%d peakRssKb=%d%n",
+            options.execution, options.nodes, startupMs, peakThreads, rssBefore, rssAfter, peakResidentKb());
+        System.exit(0);
+    }
+
+    private static long residentKb() {
+        return procStatus("VmRSS:");
+    }
+
+    private static long peakResidentKb() {
+        return procStatus("VmHWM:");
+    }
+
+    /** Reads a kB field from /proc/self/status; -1 where that is unavailable. */
+    private static long procStatus(String field) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+}
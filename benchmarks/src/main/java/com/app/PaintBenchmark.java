@@ -0,0 +1,88 @@
+package com.app;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Offscreen paint of a full-mesh cluster into a {@link BufferedImage}, with
+ * a signal arrow on every other node, as the frame timer would draw it.
+ * {@code steady} repaints an unchanged cluster (cached layers);
+ * {@code changing} also flips one node's state per frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    private static final int WIDTH = 900, HEIGHT = 650;
+
+    @Param({ "12", "60", "500", "2000" })
+    public int nodes;
+
+    private Graph graph;
+    private BufferedImage image;
+    private List<Node> members;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        graph = new Graph();
+        for (int i = 0; i < nodes; i++) {
+            Node node = Node.replica(graph, i);
+            for (Node other : Node.all()) Edge.add(other, node);
+            Node.setShown(node, true);
+        }
+        members = Node.all();
+        for (int i = 0; i + 1 < members.size(); i += 2) {
+            graph.showMessage(members.get(i), members.get(i + 1), i % 4 == 0 ? Message.Type.REQUEST : Message.Type.REPLY);
+        }
+        graph.setSize(WIDTH, HEIGHT);
+        graph.fitView();
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Node node : members) {
+            Node.setShown(node, false);
+            Edge.remove(node);
+        }
+        graph.clearSignals();
+    }
+
+    @Benchmark
+    public BufferedImage steady() {
+        return paint();
+    }
+
+    @Benchmark
+    public BufferedImage changing() {
+        Node node = members.get(frame++ % members.size());
+        node.showState(0, node.getState() == Node.NodeState.IDLE ? Node.NodeState.REQUESTING : Node.NodeState.IDLE);
+        return paint();
+    }
+
+    private BufferedImage paint() {
+        Graphics2D g = image.createGraphics();
+        graph.paint(g);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,141 @@
+package com.app;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message handling in the protocol engines, with no threads, mailboxes or
+ * Swing: every node of a cluster runs on the benchmark thread and sends
+ * into one in-memory FIFO. One operation is a full uncontended acquisition
+ * by the next node in turn (request, every REQUEST/REPLY/... it causes,
+ * enter, exit, and the messages released on exit); the {@code messages}
+ * counter gives the raw message-handling rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    @Param({ "4", "16", "64", "256" })
+    public int nodes;
+
+    @Param({ "RICART_AGRAWALA", "MAEKAWA", "HIERARCHICAL" })
+    public String engine;
+
+    @Param({ "false", "true" })
+    public boolean roucairolCarvalho;
+
+    /** Messages handled, reported by JMH as a rate next to acquisitions. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+        }
+    }
+
+    private MutualExclusion[] cluster;
+    private int[] members;
+    private final Network network = new Network();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Options options = new Options();
+        options.engine = MutualExclusion.Engine.parse(engine);
+        options.roucairolCarvalho = roucairolCarvalho;
+        options.groupSize = (int) Math.ceil(Math.sqrt(nodes));
+        cluster = new MutualExclusion[nodes];
+        members = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            cluster[i] = MutualExclusion.create(options, i, network.host(i));
+            members[i] = i;
+        }
+        network.members = members;
+    }
+
+    @Benchmark
+    public boolean acquire(Counters counters) {
+        int id = next;
+        next = (next + 1) % nodes;
+        network.entered = false;
+        cluster[id].request(members);
+        counters.messages += network.drain(cluster);
+        boolean entered = network.entered;
+        cluster[id].exit();
+        counters.messages += network.drain(cluster);
+        return entered;
+    }
+
+    /** FIFO of in-flight messages as parallel arrays, so queuing allocates nothing. */
+    static final class Network {
+        private int[] to = new int[1024];
+        private int[] from = new int[1024];
+        private Message.Type[] types = new Message.Type[1024];
+        private long[] timestamps = new long[1024];
+        private int head, tail;
+        int[] members;
+        boolean entered;
+
+        MutualExclusion.Host host(int id) {
+            return new MutualExclusion.Host() {
+                @Override public void send(int toNodeId, Message.Type type, long timestamp) { add(toNodeId, id, type, timestamp); }
+                @Override public void enterCriticalSection() { entered = true; }
+                @Override public void stateChanged() { }
+                @Override public void record(EventLog.Event event, int peer) { }
+                @Override public int[] members() { return members; }
+            };
+        }
+
+        private void add(int toNodeId, int fromNodeId, Message.Type type, long timestamp) {
+            if (tail == to.length) grow();
+            to[tail] = toNodeId;
+            from[tail] = fromNodeId;
+            types[tail] = type;
+            timestamps[tail] = timestamp;
+            tail++;
+        }
+
+        private void grow() {
+            int live = tail - head;
+            int size = Math.max(to.length, live * 2);
+            to = java.util.Arrays.copyOfRange(to, head, head + size);
+            from = java.util.Arrays.copyOfRange(from, head, head + size);
+            types = java.util.Arrays.copyOfRange(types, head, head + size);
+            timestamps = java.util.Arrays.copyOfRange(timestamps, head, head + size);
+            tail = live;
+            head = 0;
+        }
+
+        /** Delivers until quiet; returns the number of messages handled. */
+        int drain(MutualExclusion[] cluster) {
+            int handled = 0;
+            while (head < tail) {
+                int i = head++;
+                cluster[to[i]].receive(from[i], types[i], timestamps[i]);
+                handled++;
+            }
+            head = tail = 0;
+            return handled;
+        }
+    }
+}
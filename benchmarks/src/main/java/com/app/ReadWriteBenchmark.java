@@ -0,0 +1,46 @@
+package com.app;
+
+/**
+ * Critical-section throughput against the share of shared (read) requests,
+ * in the headless {@link Simulation}. Runs the same seeded closed-loop
+ * workload once per {@code --read-ratio} in {@link #RATIOS} and prints entries
+ * per virtual second, entry latency and deferrals for each. Readers only
+ * overlap when they contend, so the default is a saturated cluster; any
+ * option can be overridden as for {@code --headless}:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.app.ReadWriteBenchmark
+ * java -cp benchmarks/target/benchmarks.jar com.app.ReadWriteBenchmark --nodes=50 --keep-requests
+ * </pre>
+ */
+public class ReadWriteBenchmark {
+    private static final double[] RATIOS = { 0, 0.5, 0.75, 0.9, 0.95, 0.99, 1 };
+
+    public static void main(String[] args) {
+        System.out.printf("%-10s %12s %10s %10s %12s %10s%n",
+            "readRatio", "entries/vs", "mean ms", "p99 ms", "deferrals", "safety");
+        double baseline = 0;
+        for (double ratio : RATIOS) {
+            Options options = Options.parse(withDefaults(args, "--read-ratio=" + ratio));
+            Simulation.Report report = new Simulation(options).run();
+            double throughput = report.entries * 1000.0 / report.virtualMs;
+            if (ratio == 0) baseline = throughput;
+            System.out.printf("%-10s %12.2f %10.1f %10.1f %12d %10s  (x%.1f)%n",
+                ratio, throughput, report.metrics.latency.mean() / 1e6, report.metrics.latencyMs(0.99),
+                report.metrics.get(Metrics.Counter.DEFERRALS),
+                report.checker.violations() == 0 ? "OK" : report.checker.violations() + " violations",
+                throughput / baseline);
+        }
+    }
+
+    /** {@code args} after this benchmark's defaults and {@code ratio}, so anything given explicitly wins. */
+    private static String[] withDefaults(String[] args, String ratio) {
+        String[] defaults = {
+            "--headless", "--quiet", "--nodes=20", "--entries=20000",
+            "--workload=closed-loop", "--think-min=1", "--think-max=1", ratio,
+        };
+        String[] all = new String[defaults.length + args.length];
+        System.arraycopy(defaults, 0, all, 0, defaults.length);
+        System.arraycopy(args, 0, all, defaults.length, args.length);
+        return all;
+    }
+}
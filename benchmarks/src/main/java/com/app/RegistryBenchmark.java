@@ -0,0 +1,89 @@
+package com.app;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookups on the message path: resolving a peer id to its {@link Node}
+ * (what {@code Node.send} does for every message), finding the edge between
+ * two nodes, and showing a signal arrow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    @Param({ "16", "256", "2048" })
+    public int nodes;
+
+    private final NodeRegistry registry = new NodeRegistry();
+    private final EdgeRegistry edges = new EdgeRegistry();
+    private final SignalManager signals = new SignalManager();
+    private Node[] members;
+
+    @Setup
+    public void setUp() {
+        members = new Node[nodes];
+        for (int i = 0; i < nodes; i++) {
+            members[i] = Node.replica(null, i);
+            registry.add(members[i]);
+        }
+        // A ring plus chords: sparse enough for thousands of nodes
+        for (int i = 0; i < nodes; i++) {
+            for (int step = 1; step < nodes && step <= 8; step *= 2) {
+                edges.add(members[i], members[(i + step) % nodes]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Benchmark
+    public Node findNodeById(Cursor cursor) {
+        return registry.get(cursor.i++ % nodes);
+    }
+
+    @Benchmark
+    public Edge edgeBetween(Cursor cursor) {
+        int a = cursor.i++ % nodes;
+        return edges.get(a, (a + 1) % nodes);
+    }
+
+    @Benchmark
+    public void edgesOfNode(Cursor cursor, Blackhole blackhole) {
+        for (Edge edge : edges.of(cursor.i++ % nodes)) {
+            blackhole.consume(edge);
+        }
+    }
+
+    @Benchmark
+    public void showSignal(Cursor cursor) {
+        int a = cursor.i++ % nodes;
+        signals.showRequest(members[a], members[(a + 1) % nodes], Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public SignalInfo[] signalSnapshot(Cursor cursor) {
+        int a = cursor.i++ % nodes;
+        signals.showReply(members[a], members[(a + 1) % nodes], Long.MAX_VALUE);
+        return signals.snapshot();
+    }
+}
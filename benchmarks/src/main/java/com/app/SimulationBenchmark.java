@@ -0,0 +1,60 @@
+package com.app;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end critical-section acquisitions per second through the headless
+ * {@link Simulation}, sweeping contention: the request probability per think
+ * period sets how many nodes compete at once. Each invocation is one seeded
+ * run of {@link #ENTRIES} entries, so results are comparable across builds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SimulationBenchmark.ENTRIES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark {
+    static final int ENTRIES = 5_000;
+
+    @Param({ "5", "20", "50" })
+    public int nodes;
+
+    @Param({ "0.05", "0.35", "1.0" })
+    public double requestProbability;
+
+    @Param({ "RICART_AGRAWALA", "MAEKAWA", "HIERARCHICAL" })
+    public String engine;
+
+    private Options options;
+
+    @Setup
+    public void setUp() {
+        options = Options.parse(new String[] {
+            "--headless", "--quiet",
+            "--nodes=" + nodes,
+            "--entries=" + ENTRIES,
+            "--request-probability=" + requestProbability,
+            "--engine=" + engine,
+        });
+    }
+
+    @Benchmark
+    public Simulation.Report acquire() {
+        return new Simulation(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.app;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a message on each {@link Transport}. Two transports stand in for
+ * two processes of a cluster with one node each: node 1 answers every
+ * REQUEST from node 0 with a REPLY. {@code roundTrip} waits for each reply
+ * before the next request; {@code burst} sends {@link #BURST} requests and
+ * then waits for all the replies, so NIO can coalesce writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+    private static final int BURST = 64;
+    private static final int BASE_PORT = 17_300;
+
+    @Param({ "MEMORY", "NIO" })
+    public Transport.Kind transport;
+
+    private Transport first;
+    private Transport second;
+    private final AtomicLong replies = new AtomicLong();
+    private long expected;
+
+    @Setup
+    public void setUp() {
+        Options options = new Options();
+        options.transport = transport;
+        options.nodes = 1;
+        options.cluster = Arrays.asList(
+            new InetSocketAddress("127.0.0.1", BASE_PORT), new InetSocketAddress("127.0.0.1", BASE_PORT + 1));
+        Transport[] pair = new Transport[2];
+        Transport.Receiver answer = (to, message) -> pair[1].send(0, Message.of(Message.Type.REPLY, 1, 0));
+        Transport.Receiver count = (to, message) -> {
+            replies.incrementAndGet();
+            return true;
+        };
+        if (transport == Transport.Kind.MEMORY) {
+            // One JVM: node 0 and node 1 share a transport that routes by id
+            pair[0] = pair[1] = new MemoryTransport((to, m) -> to == 1 ? answer.deliver(to, m) : count.deliver(to, m),
+                () -> new int[] { 0, 1 });
+        } else {
+            options.process = 0;
+            pair[0] = new NioTransport(options, count);
+            options.process = 1;
+            pair[1] = new NioTransport(options, answer);
+        }
+        first = pair[0];
+        second = pair[1];
+        first.start();
+        second.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        first.close();
+        second.close();
+    }
+
+    @Benchmark
+    public long roundTrip() {
+        first.send(1, Message.of(Message.Type.REQUEST, 0, ++expected));
+        return await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long burst() {
+        for (int i = 0; i < BURST; i++) {
+            first.send(1, Message.of(Message.Type.REQUEST, 0, ++expected));
+        }
+        return await();
+    }
+
+    private long await() {
+        long seen;
+        while ((seen = replies.get()) < expected) {
+            Thread.yield();
+        }
+        return seen;
+    }
+}
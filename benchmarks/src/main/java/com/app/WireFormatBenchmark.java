@@ -0,0 +1,89 @@
+package com.app;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of turning messages into {@link WireFormat} frames and back, without
+ * a socket in between. {@code encode} fills a pooled direct buffer with
+ * {@link #FRAMES} frames; {@code roundTrip} also decodes them to a receiver
+ * that hands each message to a Blackhole. {@code parts} is 0 for plain
+ * REQUESTs, otherwise the size of each {@link Batcher} envelope.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final int FRAMES = 256;
+
+    @Param({ "0", "16" })
+    public int parts;
+
+    private Message message;
+    private ByteBuffer buffer;
+    private Transport.Receiver receiver;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        if (parts == 0) {
+            message = Message.of(Message.Type.REQUEST, 3, 42);
+        } else {
+            long[] batch = new long[parts];
+            for (int i = 0; i < parts; i++) {
+                batch[i] = i * 31L;
+            }
+            message = Message.envelope(3, batch);
+        }
+        buffer = BufferPool.shared().acquire();
+        receiver = (to, m) -> {
+            blackhole.consume(m);
+            return true;
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        BufferPool.shared().release(buffer);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int encode() {
+        buffer.clear();
+        fill();
+        return buffer.position();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int roundTrip() throws StreamCorruptedException {
+        buffer.clear();
+        fill();
+        return WireFormat.decode(buffer, 0, receiver);
+    }
+
+    private void fill() {
+        for (int i = 0; i < FRAMES; i++) {
+            WireFormat.encode(buffer, 7, message, i);
+        }
+    }
+}
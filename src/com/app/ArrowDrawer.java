@@ -2,23 +2,36 @@ package com.app;
 
 import java.awt.*;
 
+/**
+ * Draws signal arrows. Only ever called on the EDT, so the arrowhead's
+ * vertex arrays and the strokes are shared instead of allocated per arrow.
+ */
 public class ArrowDrawer {
+    private static final Stroke LINE_STROKE = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke OUTLINE_STROKE = new BasicStroke(1);
+    private static final int[] headX = new int[3];
+    private static final int[] headY = new int[3];
+
     public static void drawArrow(Graphics2D g2d, Point from, Point to, Color lineColor) {
-        double dx = to.x - from.x;
-        double dy = to.y - from.y;
+        drawArrow(g2d, from.x, from.y, to.x, to.y, lineColor);
+    }
+
+    public static void drawArrow(Graphics2D g2d, int fromX, int fromY, int toX, int toY, Color lineColor) {
+        double dx = toX - fromX;
+        double dy = toY - fromY;
         double distance = Math.sqrt(dx * dx + dy * dy);
         
         if (distance < 60) return; // Don't draw if nodes are too close
         
         // Calculate start and end points to avoid drawing over nodes
-        double startX = from.x + (dx / distance) * 35;
-        double startY = from.y + (dy / distance) * 35;
-        double endX = to.x - (dx / distance) * 35;
-        double endY = to.y - (dy / distance) * 35;
+        double startX = fromX + (dx / distance) * 35;
+        double startY = fromY + (dy / distance) * 35;
+        double endX = toX - (dx / distance) * 35;
+        double endY = toY - (dy / distance) * 35;
 
         // Draw the main arrow line in specified color
         g2d.setColor(lineColor);
-        g2d.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2d.setStroke(LINE_STROKE);
         g2d.drawLine((int)startX, (int)startY, (int)endX, (int)endY);
 
         // Calculate arrowhead - always black for better visibility
@@ -26,25 +39,19 @@ public class ArrowDrawer {
         double arrowAngle = Math.PI / 5;
         double angle = Math.atan2(dy, dx);
 
-        int arrowX1 = (int)(endX - arrowLength * Math.cos(angle - arrowAngle));
-        int arrowY1 = (int)(endY - arrowLength * Math.sin(angle - arrowAngle));
-        int arrowX2 = (int)(endX - arrowLength * Math.cos(angle + arrowAngle));
-        int arrowY2 = (int)(endY - arrowLength * Math.sin(angle + arrowAngle));
+        headX[0] = (int) endX;
+        headY[0] = (int) endY;
+        headX[1] = (int)(endX - arrowLength * Math.cos(angle - arrowAngle));
+        headY[1] = (int)(endY - arrowLength * Math.sin(angle - arrowAngle));
+        headX[2] = (int)(endX - arrowLength * Math.cos(angle + arrowAngle));
+        headY[2] = (int)(endY - arrowLength * Math.sin(angle + arrowAngle));
 
         // Draw arrowhead in black for better contrast
         g2d.setColor(Color.BLACK);
-        g2d.fillPolygon(
-            new int[]{(int)endX, arrowX1, arrowX2},
-            new int[]{(int)endY, arrowY1, arrowY2},
-            3
-        );
+        g2d.fillPolygon(headX, headY, 3);
         
         // Add a subtle outline to the arrowhead
-        g2d.setStroke(new BasicStroke(1));
-        g2d.drawPolygon(
-            new int[]{(int)endX, arrowX1, arrowX2},
-            new int[]{(int)endY, arrowY1, arrowY2},
-            3
-        );
+        g2d.setStroke(OUTLINE_STROKE);
+        g2d.drawPolygon(headX, headY, 3);
     }
 }
@@ -0,0 +1,87 @@
+package com.app;
+
+import java.util.Arrays;
+
+/**
+ * Coalesces one node's outbound protocol messages per peer. Messages are
+ * buffered until the owner calls {@link #flush()} (when its batching window
+ * expires) or a peer's buffer fills, and then leave as one ENVELOPE that keeps
+ * their send order. This way the REPLYs released on exit ride along with the
+ * REQUEST for the next entry whenever both fall in the same window.
+ * <p>
+ * Each part is packed as {@code timestamp << 21 | resource << 5 | type
+ * ordinal}, leaving 43 bits of Lamport clock. Not thread-safe; it lives on
+ * its node's thread like the protocol it serves.
+ */
+public final class Batcher {
+    private static final int TYPE_BITS = 5;
+    private static final int RESOURCE_BITS = 16;
+    public static final int MAX_RESOURCES = 1 << RESOURCE_BITS;
+    private static final Message.Type[] TYPES = Message.Type.values();
+
+    /** Receives each envelope as it leaves; {@code parts} is owned by the callee. */
+    public interface Sink {
+        void sendEnvelope(int toNodeId, long[] parts);
+    }
+
+    private final int maxBatch;
+    private final Sink sink;
+    private long[][] buffers = new long[16][];
+    private int[] counts = new int[16];
+    private final IdSet pending = new IdSet();
+    private boolean armed = false;
+
+    public Batcher(int maxBatch, Sink sink) {
+        this.maxBatch = maxBatch;
+        this.sink = sink;
+    }
+
+    public static long pack(Message.Type type, long timestamp, int resource) {
+        return (timestamp << (RESOURCE_BITS + TYPE_BITS)) | ((long) resource << TYPE_BITS) | type.ordinal();
+    }
+    public static Message.Type typeOf(long part) { return TYPES[(int) (part & ((1 << TYPE_BITS) - 1))]; }
+    public static int resourceOf(long part) { return (int) (part >>> TYPE_BITS) & (MAX_RESOURCES - 1); }
+    public static long timestampOf(long part) { return part >>> (RESOURCE_BITS + TYPE_BITS); }
+
+    /**
+     * Buffers one message. Returns true if nothing was buffered since the last
+     * {@link #flush()}, in which case the caller should arm its window timer.
+     */
+    public boolean add(int toNodeId, Message.Type type, long timestamp, int resource) {
+        if (toNodeId >= buffers.length) {
+            int size = Math.max(toNodeId + 1, buffers.length * 2);
+            buffers = Arrays.copyOf(buffers, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+        long[] buffer = buffers[toNodeId];
+        if (buffer == null) {
+            buffer = buffers[toNodeId] = new long[maxBatch];
+        }
+        buffer[counts[toNodeId]++] = pack(type, timestamp, resource);
+        pending.add(toNodeId);
+        if (counts[toNodeId] == maxBatch) {
+            flush(toNodeId);
+        }
+
+        boolean first = !armed;
+        armed = true;
+        return first;
+    }
+
+    /** Sends everything buffered, one envelope per peer. */
+    public void flush() {
+        for (int id = pending.next(0); id >= 0; id = pending.next(id + 1)) {
+            flush(id);
+        }
+        armed = false;
+    }
+
+    private void flush(int toNodeId) {
+        int count = counts[toNodeId];
+        counts[toNodeId] = 0;
+        pending.remove(toNodeId);
+        if (count > 0) {
+            sink.sendEnvelope(toNodeId, Arrays.copyOf(buffers[toNodeId], count));
+        }
+    }
+}
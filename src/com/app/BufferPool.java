@@ -0,0 +1,50 @@
+package com.app;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Recycled direct buffers of one size for everything that does I/O:
+ * transport connections, trace writers and event feeds. Direct buffers are
+ * expensive to allocate and are only freed by the garbage collector, so
+ * buffers are handed back with {@link #release} and reused rather than
+ * allocated per connection or per write. At most {@code maxPooled} idle
+ * buffers are kept; the pool allocates when empty and never blocks.
+ */
+public final class BufferPool {
+    /** Size of every pooled buffer; one always holds a whole {@link WireFormat} frame. */
+    public static final int BUFFER_BYTES = 1 << 16;
+    private static final BufferPool SHARED = new BufferPool(BUFFER_BYTES, 256);
+
+    private final int bufferBytes;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    public BufferPool(int bufferBytes, int maxPooled) {
+        this.bufferBytes = bufferBytes;
+        this.maxPooled = maxPooled;
+    }
+
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /** A cleared buffer, reused if one is idle. */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (free) {
+            buffer = free.poll();
+        }
+        if (buffer == null) return ByteBuffer.allocateDirect(bufferBytes);
+        buffer.clear();
+        return buffer;
+    }
+
+    /** Hands {@code buffer} back; the caller must not touch it afterwards. */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferBytes || !buffer.isDirect()) return;
+        synchronized (free) {
+            if (free.size() < maxPooled) free.push(buffer);
+        }
+    }
+}
@@ -1,41 +1,68 @@
-package com.app;
-
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-public class Edge {
-	private static final List<Edge> all_edges = new ArrayList<>();
-    private final Node from;
-    private final Node to;
-    private Color color;
-
-    private Edge(Node from, Node to) {
-        this.from = from;
-        this.to = to;
-        this.color = Color.GRAY;
-    }
-    
-    public static List<Edge> all() {
-        return Collections.unmodifiableList(all_edges);
-    }
-    
-    public static Edge add(Node from, Node to) {
-    	Edge edge = new Edge(from, to);
-    	all_edges.add(edge);
-    	return edge;
-    }
-    public static void remove(Node removed) {
-    	all_edges.removeIf(edge -> edge.getFrom() == removed || edge.getTo() == removed);
-    }
-    
-    public Node getFrom() { return from; }
-    public Node getTo() { return to; }
-    public synchronized Color getColor() { return color; }
-    public synchronized void setColor(Color color) { this.color = color; }
-
-    public boolean connects(Node a, Node b) {
-        return (from == a && to == b) || (from == b && to == a);
-    }
-}
\ No newline at end of file
+package com.app;
+
+import java.awt.*;
+
+public class Edge {
+	private static final EdgeRegistry registry = new EdgeRegistry();
+    private final Node from;
+    private final Node to;
+    private Color color;
+    // Positions in each endpoint's adjacency list, maintained by EdgeRegistry
+    int fromSlot, toSlot;
+
+    Edge(Node from, Node to) {
+        this.from = from;
+        this.to = to;
+        this.color = Color.GRAY;
+    }
+    
+    /** Every edge once; iterating neither locks nor copies. */
+    public static Iterable<Edge> all() {
+        return registry.all();
+    }
+
+    /** Edges at {@code node}. */
+    public static Iterable<Edge> of(Node node) {
+        return registry.of(node.getNodeId());
+    }
+
+    /** The edge between two nodes, or null if they are not connected. */
+    public static Edge between(Node a, Node b) {
+        return registry.get(a.getNodeId(), b.getNodeId());
+    }
+
+    public static int count() { return registry.size(); }
+
+    public static int degree(Node node) { return registry.degree(node.getNodeId()); }
+    
+    /** Connects two nodes; adding an existing edge returns it unchanged. */
+    public static Edge add(Node from, Node to) {
+    	return registry.add(from, to);
+    }
+
+    /** Removes every edge at {@code removed}. */
+    public static void remove(Node removed) {
+    	registry.removeAll(removed.getNodeId());
+    }
+
+    /** Removes the edge between two nodes, if any. */
+    public static boolean remove(Node a, Node b) {
+    	return registry.remove(a.getNodeId(), b.getNodeId());
+    }
+
+    public static int version() { return registry.version(); }
+    
+    public Node getFrom() { return from; }
+    public Node getTo() { return to; }
+    public synchronized Color getColor() { return color; }
+    public synchronized void setColor(Color color) { this.color = color; }
+
+    public boolean connects(Node a, Node b) {
+        return (from == a && to == b) || (from == b && to == a);
+    }
+
+    public boolean connects(int a, int b) {
+        int f = from.getNodeId(), t = to.getNodeId();
+        return (f == a && t == b) || (f == b && t == a);
+    }
+}
@@ -0,0 +1,244 @@
+package com.app;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Undirected edges indexed two ways: an adjacency list per node id, and an
+ * open-addressing table keyed by the id pair. Adding an edge and looking one
+ * up are constant time, and removing a node touches only its own edges, so
+ * sparse topologies cost what they contain rather than N².
+ * <p>
+ * Writers serialize on the registry; readers take no lock and copy nothing.
+ * A reader racing a writer may or may not see that change (like iterating a
+ * {@code ConcurrentHashMap}), but always sees fully built edges: slots are
+ * published before the volatile size or table that makes them reachable, and
+ * lookups check the edge's own final endpoints rather than trusting a key.
+ */
+public final class EdgeRegistry {
+    private static final Edge[] NONE = new Edge[0];
+    // Marks a removed table slot so probe chains stay intact
+    private static final Edge TOMBSTONE = new Edge(null, null);
+
+    /** Edges of one node; removal swaps the last edge into the freed slot. */
+    private static final class Adjacency {
+        Edge[] edges = NONE;
+        volatile int size;
+    }
+
+    private volatile Adjacency[] adjacency = new Adjacency[16];
+    private volatile Edge[] table = new Edge[64];
+    private int used; // Live edges plus tombstones in table
+    private volatile int count;
+    private volatile int version;
+
+    public int size() { return count; }
+
+    /** Bumped on every change so views can cache what they draw. */
+    public int version() { return version; }
+
+    /** The edge between the two ids, or null. */
+    public Edge get(int a, int b) {
+        Edge[] slots = table;
+        int mask = slots.length - 1;
+        for (int i = hash(a, b) & mask; ; i = (i + 1) & mask) {
+            Edge edge = slots[i];
+            if (edge == null) return null;
+            if (edge != TOMBSTONE && edge.connects(a, b)) return edge;
+        }
+    }
+
+    /** Number of edges at {@code nodeId}. */
+    public int degree(int nodeId) {
+        Adjacency[] nodes = adjacency;
+        Adjacency adj = nodeId < nodes.length ? nodes[nodeId] : null;
+        return adj == null ? 0 : adj.size;
+    }
+
+    /** Adds the edge unless the pair is already connected; returns the edge either way. */
+    public synchronized Edge add(Node from, Node to) {
+        int a = from.getNodeId(), b = to.getNodeId();
+        if (a == b) throw new IllegalArgumentException("Self edge on node " + a);
+        Edge existing = get(a, b);
+        if (existing != null) return existing;
+
+        Edge edge = new Edge(from, to);
+        edge.fromSlot = append(a, edge);
+        edge.toSlot = append(b, edge);
+        if ((used + 1) * 2 > table.length) rehash();
+        Edge[] slots = table;
+        int mask = slots.length - 1;
+        int i = hash(a, b) & mask;
+        while (slots[i] != null) i = (i + 1) & mask; // Tombstones are only reclaimed by rehash
+        slots[i] = edge;
+        used++;
+        count++;
+        version++;
+        return edge;
+    }
+
+    /** Removes the edge between the two ids; returns false if there was none. */
+    public synchronized boolean remove(int a, int b) {
+        Edge edge = get(a, b);
+        if (edge == null) return false;
+        detach(edge, a);
+        detach(edge, b);
+        unlink(edge);
+        count--;
+        version++;
+        return true;
+    }
+
+    /** Removes every edge at {@code nodeId}, in time proportional to its degree. */
+    public synchronized int removeAll(int nodeId) {
+        Adjacency[] nodes = adjacency;
+        Adjacency adj = nodeId < nodes.length ? nodes[nodeId] : null;
+        if (adj == null || adj.size == 0) return 0;
+        int removed = adj.size;
+        for (int i = removed - 1; i >= 0; i--) {
+            Edge edge = adj.edges[i];
+            int other = edge.getFrom().getNodeId() == nodeId ? edge.getTo().getNodeId() : edge.getFrom().getNodeId();
+            detach(edge, other);
+            unlink(edge);
+            adj.edges[i] = null;
+        }
+        adj.size = 0;
+        count -= removed;
+        version++;
+        return removed;
+    }
+
+    /** Every edge once, in no particular order. Weakly consistent under concurrent changes. */
+    public Iterable<Edge> all() {
+        return () -> new TableIterator(table);
+    }
+
+    /** Edges at {@code nodeId}. Weakly consistent under concurrent changes. */
+    public Iterable<Edge> of(int nodeId) {
+        Adjacency[] nodes = adjacency;
+        Adjacency adj = nodeId < nodes.length ? nodes[nodeId] : null;
+        return () -> new AdjacencyIterator(adj);
+    }
+
+    private int append(int nodeId, Edge edge) {
+        Adjacency[] nodes = adjacency;
+        if (nodeId >= nodes.length) {
+            nodes = adjacency = Arrays.copyOf(nodes, Math.max(nodeId + 1, nodes.length * 2));
+        }
+        Adjacency adj = nodes[nodeId];
+        if (adj == null) adj = nodes[nodeId] = new Adjacency();
+        int size = adj.size;
+        if (size == adj.edges.length) {
+            adj.edges = Arrays.copyOf(adj.edges, Math.max(4, size * 2));
+        }
+        adj.edges[size] = edge;
+        adj.size = size + 1; // Publishes the slot
+        return size;
+    }
+
+    /** Takes {@code edge} out of the adjacency of {@code nodeId}, one endpoint of it. */
+    private void detach(Edge edge, int nodeId) {
+        Adjacency adj = adjacency[nodeId];
+        boolean isFrom = edge.getFrom().getNodeId() == nodeId;
+        int slot = isFrom ? edge.fromSlot : edge.toSlot;
+        int last = adj.size - 1;
+        Edge moved = adj.edges[last];
+        adj.edges[slot] = moved;
+        if (moved.getFrom().getNodeId() == nodeId) moved.fromSlot = slot; else moved.toSlot = slot;
+        adj.edges[last] = null;
+        adj.size = last;
+    }
+
+    private void unlink(Edge edge) {
+        Edge[] slots = table;
+        int mask = slots.length - 1;
+        for (int i = hash(edge.getFrom().getNodeId(), edge.getTo().getNodeId()) & mask; ; i = (i + 1) & mask) {
+            if (slots[i] == edge) {
+                slots[i] = TOMBSTONE;
+                return;
+            }
+        }
+    }
+
+    private void rehash() {
+        int live = count;
+        Edge[] slots = new Edge[Math.max(64, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1)];
+        int mask = slots.length - 1;
+        for (Edge edge : table) {
+            if (edge == null || edge == TOMBSTONE) continue;
+            int i = hash(edge.getFrom().getNodeId(), edge.getTo().getNodeId()) & mask;
+            while (slots[i] != null) i = (i + 1) & mask;
+            slots[i] = edge;
+        }
+        used = live;
+        table = slots; // Publishes the rebuilt table
+    }
+
+    private static int hash(int a, int b) {
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /** One pass over the slots of a table; a table is never shrunk, only replaced. */
+    private static final class TableIterator implements Iterator<Edge> {
+        private final Edge[] slots;
+        private int index = 0;
+        private Edge next;
+
+        TableIterator(Edge[] slots) {
+            this.slots = slots;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && index < slots.length) {
+                Edge edge = slots[index++];
+                if (edge != TOMBSTONE) next = edge;
+            }
+        }
+
+        @Override public boolean hasNext() { return next != null; }
+
+        @Override
+        public Edge next() {
+            if (next == null) throw new NoSuchElementException();
+            Edge edge = next;
+            advance();
+            return edge;
+        }
+    }
+
+    private static final class AdjacencyIterator implements Iterator<Edge> {
+        private final Edge[] edges;
+        private final int size;
+        private int index = 0;
+        private Edge next;
+
+        AdjacencyIterator(Adjacency adj) {
+            int size = adj == null ? 0 : adj.size; // Read before the array: a grown array is published first
+            this.edges = size == 0 ? NONE : adj.edges;
+            this.size = Math.min(size, edges.length);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && index < size) {
+                next = edges[index++]; // Null if removed while we read
+            }
+        }
+
+        @Override public boolean hasNext() { return next != null; }
+
+        @Override
+        public Edge next() {
+            if (next == null) throw new NoSuchElementException();
+            Edge edge = next;
+            advance();
+            return edge;
+        }
+    }
+}
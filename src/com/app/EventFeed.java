@@ -0,0 +1,198 @@
+package com.app;
+
+import java.awt.FlowLayout;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import com.app.Node.NodeState;
+
+/**
+ * Shows a cluster running in other processes. Each process started with
+ * {@code --feed=HOST:PORT} streams its binary {@link EventLog} records to the
+ * port given here with {@code --observe}; a reader thread per connection
+ * decodes them and the EDT applies them to display-only
+ * {@link Node#replica replica} nodes, the way {@link Replay} plays a trace.
+ * If the view falls behind, records beyond {@link #MAX_PENDING} are dropped.
+ */
+public class EventFeed {
+    private static final int FRAME_MS = 30;
+    private static final int MAX_PENDING = 1 << 20;
+    private static final int MAX_RECORDS_PER_FRAME = 200_000;
+    private static final int MAX_SIGNALS_PER_FRAME = 256;
+    private static final Message.Type[] TYPES = Message.Type.values();
+
+    private final Graph graph;
+    private final ServerSocketChannel server;
+    private final Queue<TraceReader.Record> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private Node[] replicas = new Node[16];
+    private final JLabel status = new JLabel();
+
+    public EventFeed(int port, Graph graph) {
+        this.graph = graph;
+        try {
+            this.server = ServerSocketChannel.open().bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for event feeds on port " + port, e);
+        }
+        Thread acceptor = new Thread(this::accept, "EventFeed-Accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        new Timer(FRAME_MS, e -> frame()).start();
+    }
+
+    /** Connection count and a Fit button for the bottom of the window. */
+    public JPanel controls() {
+        JPanel panel = new JPanel(new FlowLayout());
+        panel.add(status);
+        JButton fit = new JButton("Fit");
+        fit.addActionListener(e -> graph.fitView());
+        panel.add(fit);
+        updateStatus();
+        return panel;
+    }
+
+    private void accept() {
+        while (true) {
+            try {
+                SocketChannel channel = server.accept();
+                Thread reader = new Thread(() -> read(channel), "EventFeed-" + channel.getRemoteAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                System.err.println("Event feed stopped accepting: " + e);
+                return;
+            }
+        }
+    }
+
+    private void read(SocketChannel channel) {
+        connections.incrementAndGet();
+        ByteBuffer in = BufferPool.shared().acquire();
+        boolean started = false;
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                if (!started && in.remaining() >= WireFormat.HEADER_BYTES) {
+                    WireFormat.readHeader(in); // Start time unused; records are applied as they arrive
+                    started = true;
+                }
+                while (started && in.remaining() >= WireFormat.EVENT_BYTES) {
+                    queue(WireFormat.getEvent(in, in.position(), new TraceReader.Record()));
+                    in.position(in.position() + WireFormat.EVENT_BYTES);
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Event feed failed: " + e);
+        } finally {
+            connections.decrementAndGet();
+            BufferPool.shared().release(in);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    private void queue(TraceReader.Record record) {
+        received.incrementAndGet();
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+        } else {
+            pending.add(record);
+        }
+    }
+
+    private void frame() {
+        int signals = 0;
+        boolean changed = false;
+        TraceReader.Record r;
+        for (int applied = 0; applied < MAX_RECORDS_PER_FRAME && (r = pending.poll()) != null; applied++) {
+            pendingCount.decrementAndGet();
+            changed |= apply(r);
+            if (r.event == EventLog.Event.SENT && signals < MAX_SIGNALS_PER_FRAME) {
+                showSignal(r);
+                signals++;
+            }
+        }
+        if (changed) graph.markDirty();
+        updateStatus();
+    }
+
+    /** Moves the replica for {@code r.node} to the state the record implies; true if anything is shown differently. */
+    private boolean apply(TraceReader.Record r) {
+        switch (r.event) {
+            case SIGNAL:
+            case SIGNAL_RESET:
+                return false;
+            case NODE_STOPPED:
+            case NODE_REMOVED:
+                return hide(r.node);
+            case REQUESTED:
+                return show(r.node, r.resource, NodeState.REQUESTING);
+            case ENTERED:
+                return show(r.node, r.resource, NodeState.IN_CS);
+            case EXITED:
+            case GAVE_UP:
+                return show(r.node, r.resource, NodeState.IDLE);
+            default:
+                return show(r.node, r.resource, null);
+        }
+    }
+
+    /** Shows {@code id}, in {@code state} on {@code resource} or as it was if null. */
+    private boolean show(int id, int resource, NodeState state) {
+        if (id < 0) return false;
+        if (id >= replicas.length) replicas = Arrays.copyOf(replicas, Math.max(id + 1, replicas.length * 2));
+        Node replica = replicas[id];
+        if (replica == null) replica = replicas[id] = Node.replica(graph, id);
+        if (state != null) replica.showState(resource, state);
+        if (!Node.isShown(replica)) {
+            for (Node other : Node.all()) Edge.add(other, replica);
+            Node.setShown(replica, true);
+        }
+        return true;
+    }
+
+    private boolean hide(int id) {
+        Node replica = id >= 0 && id < replicas.length ? replicas[id] : null;
+        if (replica == null || !Node.isShown(replica)) return false;
+        Node.setShown(replica, false);
+        Edge.remove(replica);
+        return true;
+    }
+
+    private void showSignal(TraceReader.Record r) {
+        if (r.peer < 0 || r.peer >= replicas.length || r.node >= replicas.length) return;
+        Node from = replicas[r.node];
+        Node to = replicas[r.peer];
+        if (from != null && to != null && Node.isShown(to)) {
+            graph.showMessage(from, to, TYPES[r.arg], r.resource);
+        }
+    }
+
+    private void updateStatus() {
+        status.setText(String.format("%d processes connected, %d events received, %d dropped",
+            connections.get(), received.get(), dropped.get()));
+    }
+}
@@ -0,0 +1,340 @@
+package com.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured, asynchronous event log. Recording an event copies six
+ * primitives (time, node, peer, clock, argument, resource) into a preallocated ring of
+ * parallel arrays and returns; nothing is formatted or allocated on the
+ * caller's thread and no lock is taken. A daemon writer thread drains the ring
+ * and renders it as text or as fixed-size binary records. When the text
+ * writer falls behind, new events are dropped and counted rather than
+ * blocking nodes; a binary log is a trace for {@link Replay} and must be
+ * complete, so there producers yield until the writer has made room.
+ * <p>
+ * The ring uses the same per-slot sequence scheme as {@link Mailbox}.
+ * <p>
+ * Binary logs use the {@link WireFormat} trace layout.
+ * <p>
+ * With {@code --feed=HOST:PORT} the binary records stream to an observer
+ * ({@link EventFeed}) instead of a file. A live view can miss events, so a
+ * feed drops rather than stall nodes, like a text log.
+ */
+public final class EventLog {
+    public enum Level { OFF, INFO, DEBUG }
+
+    public enum Format { TEXT, BINARY }
+
+    public enum Event {
+        NODE_ADDED(Level.INFO), NODE_STARTED(Level.INFO), NODE_STOPPED(Level.INFO), NODE_REMOVED(Level.INFO),
+        REQUESTED(Level.INFO), ENTERED(Level.INFO), EXITED(Level.INFO), GAVE_UP(Level.INFO),
+        SENT(Level.DEBUG), RECEIVED(Level.DEBUG), DEFERRED(Level.DEBUG),
+        GRANTED(Level.DEBUG), YIELDED(Level.DEBUG),
+        SIGNAL(Level.DEBUG), SIGNAL_RESET(Level.DEBUG),
+        VIOLATION(Level.INFO), STARVED(Level.INFO),
+        SUSPECTED(Level.INFO);
+
+        final Level level;
+        Event(Level level) { this.level = level; }
+    }
+
+    /** Argument of a protocol event for a shared (read) request; 0 for an exclusive one. */
+    public static final int SHARED = 1;
+
+    private static final Event[] EVENTS = Event.values();
+    private static final Message.Type[] TYPES = Message.Type.values();
+    private static final EventLog DISABLED = new EventLog(Level.OFF, 2, false);
+    private static volatile EventLog current = DISABLED;
+
+    private final Level level;
+    private final boolean lossless;
+    private final long origin = System.nanoTime();
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final long[] clocks;
+    private final int[] nodes;
+    private final int[] peers;
+    private final int[] events;
+    private final int[] args;
+    private final int[] resources;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;
+    private volatile boolean closed = false;
+    private Thread writer;
+
+    private EventLog(Level level, int capacity, boolean lossless) {
+        this.level = level;
+        this.lossless = lossless;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.times = new long[size];
+        this.clocks = new long[size];
+        this.nodes = new int[size];
+        this.peers = new int[size];
+        this.events = new int[size];
+        this.args = new int[size];
+        this.resources = new int[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** The log nodes and the visualizer record into; disabled until {@link #install}. */
+    public static EventLog get() {
+        return current;
+    }
+
+    /** Opens a log for {@code options} and makes it current, closing the previous one. */
+    public static EventLog install(Options options) {
+        EventLog log = open(options);
+        EventLog previous = current;
+        current = log;
+        previous.close();
+        return log;
+    }
+
+    public static EventLog open(Options options) {
+        if (options.logLevel == Level.OFF) return DISABLED;
+        boolean lossless = options.logFormat == Format.BINARY && options.feed == null;
+        EventLog log = new EventLog(options.logLevel, options.logBuffer, lossless);
+        try {
+            log.startWriter(options);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log " + (options.feed != null ? options.feed : options.logFile), e);
+        }
+        return log;
+    }
+
+    public boolean isEnabled(Event event) {
+        return event.level.compareTo(level) <= 0;
+    }
+
+    /** Records one event unless its level is disabled. Never blocks a text log. */
+    public void record(Event event, int node, int peer, long clock, int arg) {
+        record(event, node, peer, clock, arg, 0);
+    }
+
+    /** As {@link #record(Event, int, int, long, int)}, for an event concerning one of several resources. */
+    public void record(Event event, int node, int peer, long clock, int arg, int resource) {
+        if (!isEnabled(event)) return;
+        recordAt(System.nanoTime() - origin, event, node, peer, clock, arg, resource);
+    }
+
+    /** As {@link #record}, with the time supplied by the caller (the simulator's virtual clock). */
+    public void recordAt(long time, Event event, int node, int peer, long clock, int arg, int resource) {
+        if (!isEnabled(event)) return;
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (diff < 0) {
+                if (!lossless || closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+        times[index] = time;
+        clocks[index] = clock;
+        nodes[index] = node;
+        peers[index] = peer;
+        events[index] = event.ordinal();
+        args[index] = arg;
+        resources[index] = resource;
+        sequences.set(index, position + 1);
+    }
+
+    /** Events lost because the ring was full. */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Writes out everything recorded so far and stops the writer. */
+    public void close() {
+        if (writer == null || closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startWriter(Options options) throws IOException {
+        Sink sink;
+        if (options.feed != null) {
+            sink = new BinarySink(SocketChannel.open(options.feed));
+        } else if (options.logFormat == Format.BINARY) {
+            sink = new BinarySink(FileChannel.open(Paths.get(options.logFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        } else {
+            sink = new TextSink(options.logFile, options.resources > 1);
+        }
+        writer = new Thread(() -> drainLoop(sink), "EventLog-Writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "EventLog-Close"));
+    }
+
+    private void drainLoop(Sink sink) {
+        long reportedDrops = 0;
+        try {
+            while (true) {
+                boolean finishing = closed;
+                int drained = 0;
+                long position = head;
+                int index;
+                while (sequences.get(index = (int) position & mask) == position + 1) {
+                    sink.write(times[index], clocks[index], nodes[index], peers[index], events[index], args[index], resources[index]);
+                    sequences.lazySet(index, position + mask + 1);
+                    head = ++position;
+                    drained++;
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    sink.dropped(drops - reportedDrops);
+                    reportedDrops = drops;
+                }
+                if (drained == 0) {
+                    sink.flush();
+                    if (finishing) break;
+                    LockSupport.parkNanos(this, 1_000_000L);
+                }
+            }
+            sink.close();
+        } catch (IOException e) {
+            closed = true; // Stop lossless producers waiting for us
+            System.err.println("Event log writer failed: " + e);
+        }
+    }
+
+    private interface Sink {
+        void write(long time, long clock, int node, int peer, int event, int arg, int resource) throws IOException;
+        void dropped(long count) throws IOException;
+        void flush() throws IOException;
+        void close() throws IOException;
+    }
+
+    /** One line per event, in the console format the nodes used to print. */
+    private static final class TextSink implements Sink {
+        private final Writer out;
+        private final boolean ownsStream;
+        private final boolean showResource;
+        private final StringBuilder line = new StringBuilder(128);
+
+        TextSink(String file, boolean showResource) throws IOException {
+            ownsStream = file != null;
+            this.showResource = showResource;
+            out = new BufferedWriter(new OutputStreamWriter(
+                file != null ? Files.newOutputStream(Paths.get(file)) : System.out, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public void write(long time, long clock, int node, int peer, int event, int arg, int resource) throws IOException {
+            line.setLength(0);
+            line.append("[Node-").append(node).append("] ");
+            if (showResource) line.append("[R").append(resource).append("] ");
+            describe(EVENTS[event], peer, arg);
+            line.append(" (Clock: ").append(clock).append(")\n");
+            out.append(line);
+        }
+
+        private void describe(Event event, int peer, int arg) {
+            switch (event) {
+                case NODE_ADDED: line.append("Node added"); break;
+                case NODE_STARTED: line.append("Node started"); break;
+                case NODE_STOPPED: line.append("Node stopped"); break;
+                case NODE_REMOVED: line.append("Node removed"); break;
+                case REQUESTED: line.append("Requesting Critical Section").append(arg == SHARED ? " (shared)" : ""); break;
+                case ENTERED: line.append("ENTERED Critical Section").append(arg == SHARED ? " (shared)" : ""); break;
+                case EXITED: line.append("EXITED Critical Section").append(arg == SHARED ? " (shared)" : ""); break;
+                case GAVE_UP: line.append("Node-").append(peer).append(" has higher priority, giving up my request"); break;
+                case SENT: line.append("Sending ").append(TYPES[arg]).append(" to Node-").append(peer); break;
+                case RECEIVED: line.append("Received ").append(TYPES[arg]).append(" from Node-").append(peer); break;
+                case DEFERRED: line.append("Deferring reply to Node-").append(peer); break;
+                case GRANTED: line.append("Granting vote to Node-").append(peer); break;
+                case YIELDED: line.append("Yielding vote back to Node-").append(peer); break;
+                case SIGNAL: line.append("Showing ").append(TYPES[arg]).append(" to Node-").append(peer); break;
+                case VIOLATION: line.append("MUTUAL EXCLUSION VIOLATED: entered while another node was in the Critical Section"); break;
+                case STARVED: line.append("Starving: request has waited past the starvation limit"); break;
+                case SUSPECTED: line.append("Node-").append(peer).append(" has gone silent, evicting it"); break;
+                case SIGNAL_RESET:
+                    if (peer < 0) line.append("Cleared all signals");
+                    else line.append("Reset signals with Node-").append(peer);
+                    break;
+                default: line.append(event); break;
+            }
+        }
+
+        @Override
+        public void dropped(long count) throws IOException {
+            out.append("[EventLog] ").append(Long.toString(count)).append(" events dropped\n");
+        }
+
+        @Override public void flush() throws IOException { out.flush(); }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsStream) out.close(); else out.flush();
+        }
+    }
+
+    /** Fixed-size records to a file or a feed socket; drops are not recorded. */
+    private static final class BinarySink implements Sink {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = BufferPool.shared().acquire();
+
+        BinarySink(WritableByteChannel channel) {
+            this.channel = channel;
+            WireFormat.putHeader(buffer, System.currentTimeMillis());
+        }
+
+        @Override
+        public void write(long time, long clock, int node, int peer, int event, int arg, int resource) throws IOException {
+            if (buffer.remaining() < WireFormat.EVENT_BYTES) flush();
+            WireFormat.putEvent(buffer, time, clock, node, peer, event, arg, resource);
+        }
+
+        @Override public void dropped(long count) { }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+            BufferPool.shared().release(buffer);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.app;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How {@link Node}s get CPU time.
+ * <ul>
+ * <li>{@code PLATFORM}: one OS thread per node plus one per CS entry (the original model).</li>
+ * <li>{@code VIRTUAL}: the same loops, but on virtual threads (Java 21+).</li>
+ * <li>{@code SHARED}: no thread per node at all; mailboxes are drained and
+ *     timers fire on one shared scheduled pool sized to the CPU count.</li>
+ * </ul>
+ */
+public enum ExecutionMode {
+    PLATFORM, VIRTUAL, SHARED;
+
+    private static volatile ScheduledExecutorService pool;
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null, name = null, unstarted = null;
+        try {
+            // Looked up reflectively so the project still compiles for older releases
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    public static ExecutionMode parse(String value) {
+        ExecutionMode mode = valueOf(value.toUpperCase());
+        if (!mode.isSupported()) {
+            throw new IllegalArgumentException("--exec=" + value + " needs Java 21 or newer");
+        }
+        return mode;
+    }
+
+    public boolean isSupported() {
+        return this != VIRTUAL || OF_VIRTUAL != null;
+    }
+
+    /** Unstarted thread for {@code task}; not available in SHARED mode. */
+    public Thread newThread(Runnable task, String name) {
+        switch (this) {
+            case PLATFORM:
+                return new Thread(task, name);
+            case VIRTUAL:
+                try {
+                    Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                    return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot create virtual thread", e);
+                }
+            default:
+                throw new UnsupportedOperationException(this + " mode has no per-node threads");
+        }
+    }
+
+    /** The pool behind SHARED mode, created on first use. */
+    public static ScheduledExecutorService pool() {
+        ScheduledExecutorService result = pool;
+        if (result == null) {
+            synchronized (ExecutionMode.class) {
+                result = pool;
+                if (result == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                        Runtime.getRuntime().availableProcessors(), task -> {
+                            Thread thread = new Thread(task, "Node-Pool-" + count.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                    executor.setRemoveOnCancelPolicy(true);
+                    pool = result = executor;
+                }
+            }
+        }
+        return result;
+    }
+}
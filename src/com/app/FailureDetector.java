@@ -0,0 +1,141 @@
+package com.app;
+
+import java.util.Arrays;
+
+/**
+ * Heartbeat failure detector for one node, arranged as a ring so that
+ * watching the cluster costs O(N) messages per interval rather than O(N²).
+ * Every {@code --heartbeat} milliseconds a node sends a HEARTBEAT to its
+ * predecessor (the next lower live id, wrapping round) and checks on its
+ * successor. Any message from the successor counts as a sign of life. One
+ * silent for {@code --suspect-after} is suspected.
+ * <p>
+ * The node that suspects a peer evicts it and sends one EVICT to every live
+ * member, the suspect included. Each member evicts it in turn, without
+ * waiting for its own timeout or passing the news on. The ring then closes
+ * over the gap. The new successor only learns it has a new predecessor when
+ * our EVICT reaches it, and only heartbeats on its next tick, so it gets
+ * {@code graceMs} on top of a full timeout before it can be suspected.
+ * Evicting a
+ * peer hands it to the {@link Host}, which clears it from every protocol
+ * instance so no request waits on it any longer. Later requests only go to
+ * {@link #members}, and anything still arriving from an evicted peer is
+ * dropped. A node that learns it was evicted itself was suspected wrongly
+ * (or cut off), and it stops: the others no longer wait for it, so it may not
+ * take part either.
+ * <p>
+ * Not thread-safe; it lives on its node's thread like the protocols it
+ * serves. Times are (virtual) milliseconds.
+ */
+public final class FailureDetector {
+
+    /** How the detector reaches the rest of its node. */
+    public interface Host {
+        /** Sends a HEARTBEAT, or an EVICT naming {@code subject}. */
+        void send(int toNodeId, Message.Type type, long subject);
+        /** {@code nodeId} is gone: forget it everywhere; {@code suspected} if we found out first. */
+        void evict(int nodeId, boolean suspected);
+    }
+
+    private static final int NONE = -1;
+
+    private final int nodeId;
+    private final long timeoutMs;
+    private final long graceMs;
+    private final Host host;
+    private final IdSet evicted = new IdSet();
+    private long[] lastHeard = new long[16];
+    private int watched = NONE;
+
+    // Live members, kept while the membership array and the evictions stay the same
+    private int[] source;
+    private int[] live;
+
+    /** {@code graceMs} should cover an EVICT's delivery plus one heartbeat interval. */
+    public FailureDetector(int nodeId, long timeoutMs, long graceMs, Host host) {
+        this.nodeId = nodeId;
+        this.timeoutMs = timeoutMs;
+        this.graceMs = graceMs;
+        this.host = host;
+    }
+
+    /** {@code all} without the evicted; the same array until either changes. */
+    public int[] members(int[] all) {
+        if (all != source) {
+            source = all;
+            live = null;
+        }
+        if (live == null) {
+            int[] kept = new int[all.length];
+            int count = 0;
+            for (int id : all) {
+                if (!evicted.contains(id)) kept[count++] = id;
+            }
+            live = count == all.length ? all : Arrays.copyOf(kept, count);
+        }
+        return live;
+    }
+
+    public boolean isEvicted(int id) {
+        return evicted.contains(id);
+    }
+
+    /** Notes a message from {@code from}; false if it was evicted and the message should be dropped. */
+    public boolean heard(int from, long now) {
+        if (evicted.contains(from)) return false;
+        if (from >= lastHeard.length) lastHeard = Arrays.copyOf(lastHeard, Math.max(from + 1, lastHeard.length * 2));
+        lastHeard[from] = now;
+        return true;
+    }
+
+    /** Handles a HEARTBEAT or EVICT from a peer. */
+    public void receive(int fromNodeId, Message.Type type, long subject) {
+        switch (type) {
+            case HEARTBEAT:
+                break; // Already noted by heard()
+            case EVICT:
+                if (subject == nodeId) {
+                    host.evict(nodeId, false);
+                } else if (evicted.add((int) subject)) {
+                    live = null;
+                    host.evict((int) subject, false);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected " + type + " from Node-" + fromNodeId);
+        }
+    }
+
+    /** One heartbeat interval: signs of life to our predecessor, and a check on our successor. */
+    public void tick(int[] all, long now) {
+        int[] members = members(all);
+        int predecessor = NONE, last = NONE, successor = NONE, first = NONE;
+        for (int id : members) {
+            if (id == nodeId) continue;
+            if (id < nodeId && (predecessor == NONE || id > predecessor)) predecessor = id;
+            if (id > nodeId && (successor == NONE || id < successor)) successor = id;
+            if (last == NONE || id > last) last = id;
+            if (first == NONE || id < first) first = id;
+        }
+        if (predecessor == NONE) predecessor = last;
+        if (successor == NONE) successor = first;
+
+        if (predecessor != NONE) host.send(predecessor, Message.Type.HEARTBEAT, 0);
+        if (successor != watched) {
+            watched = successor; // A new neighbour gets a full timeout once it can know it is watched
+            if (successor != NONE) heard(successor, now + graceMs);
+        } else if (successor != NONE && now - lastHeard[successor] > timeoutMs) {
+            suspect(successor, members);
+        }
+    }
+
+    private void suspect(int suspect, int[] members) {
+        evicted.add(suspect);
+        live = null;
+        watched = NONE;
+        for (int id : members) {
+            if (id != nodeId) host.send(id, Message.Type.EVICT, suspect); // The suspect too, should it still be running
+        }
+        host.evict(suspect, true);
+    }
+}
@@ -1,276 +1,799 @@
-package com.app;
-
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.util.List;
-
-public class Graph extends JPanel {
-    private static final long serialVersionUID = 1L;
-    private final SignalManager signalManager;
-    private final Color BACKGROUND_COLOR = new Color(248, 249, 250);
-    private final Color EDGE_COLOR = new Color(149, 165, 166);
-    private final Color ACTIVE_EDGE_COLOR = new Color(52, 152, 219);
-
-    public Graph() {
-        this.signalManager = new SignalManager();
-        setPreferredSize(new Dimension(900, 650));
-        setBackground(BACKGROUND_COLOR);
-    }
-    
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
-        
-        // Enable high-quality rendering
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-        drawEdges(g2d);
-        drawSignalArrows(g2d);
-        drawNodes(g2d);
-        drawLegend(g2d);
-        drawStatistics(g2d);
-    }
-
-    private void drawEdges(Graphics2D g2d) {
-        g2d.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        
-        for (Edge edge : Edge.all()) {
-            Point p1 = edge.getFrom().getPosition();
-            Point p2 = edge.getTo().getPosition();
-            
-            // Check for active signals
-            String key1 = edge.getFrom().getNodeId() + "-" + edge.getTo().getNodeId();
-            String key2 = edge.getTo().getNodeId() + "-" + edge.getFrom().getNodeId();
-            
-            SignalInfo signal1 = signalManager.getActiveSignals().get(key1);
-            SignalInfo signal2 = signalManager.getActiveSignals().get(key2);
-            
-            if (signal1 != null || signal2 != null) {
-                g2d.setColor(ACTIVE_EDGE_COLOR);
-                g2d.setStroke(new BasicStroke(2.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            } else {
-                g2d.setColor(EDGE_COLOR);
-                g2d.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            }
-            
-            g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-        }
-    }
-
-    private void drawSignalArrows(Graphics2D g2d) {
-        for (SignalInfo signal : signalManager.getActiveSignals().values()) {
-            Point from = signal.from.getPosition();
-            Point to = signal.to.getPosition();
-            ArrowDrawer.drawArrow(g2d, from, to, signal.signalColor);
-        }
-    }
-
-    private void drawNodes(Graphics2D g2d) {
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        
-        for (Node node : Node.all()) {
-            Point pos = node.getPosition();
-            Color nodeColor = node.getColor();
-            
-            // Draw node shadow for depth
-            g2d.setColor(new Color(0, 0, 0, 30));
-            g2d.fillOval(pos.x - 32, pos.y - 28, 64, 64);
-            
-            // Draw node circle with gradient effect
-            g2d.setColor(nodeColor);
-            g2d.fillOval(pos.x - 30, pos.y - 30, 60, 60);
-            
-            // Add subtle inner highlight
-            g2d.setColor(nodeColor.brighter());
-            g2d.fillOval(pos.x - 25, pos.y - 25, 20, 20);
-            
-            // Draw node border
-            g2d.setColor(nodeColor.darker());
-            g2d.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2d.drawOval(pos.x - 30, pos.y - 30, 60, 60);
-            
-            // Draw node ID with better contrast
-            String id = String.valueOf(node.getNodeId());
-            FontMetrics fm = g2d.getFontMetrics();
-            int textWidth = fm.stringWidth(id);
-            int textHeight = fm.getAscent();
-            
-            // Text shadow
-            g2d.setColor(new Color(0, 0, 0, 100));
-            g2d.drawString(id, pos.x - textWidth / 2 + 1, pos.y + textHeight / 4 + 1);
-            
-            // Main text
-            g2d.setColor(Color.WHITE);
-            g2d.drawString(id, pos.x - textWidth / 2, pos.y + textHeight / 4);
-        }
-    }
-
-    private void drawLegend(Graphics2D g2d) {
-        int x = 15, y = 25;
-        int spacing = 25;
-        
-        // Background panel for legend
-        g2d.setColor(new Color(255, 255, 255, 220));
-        g2d.fillRoundRect(x - 10, y - 15, 250, 170, 10, 10);
-        g2d.setColor(new Color(189, 195, 199));
-        g2d.setStroke(new BasicStroke(1));
-        g2d.drawRoundRect(x - 10, y - 15, 250, 170, 10, 10);
-        
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        g2d.setColor(new Color(44, 62, 80));
-        g2d.drawString("Node States", x, y);
-        y += spacing;
-        
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        
-        // Node states
-        for (Node.NodeState state : Node.NodeState.values()) {
-            g2d.setColor(state.getColor());
-            g2d.fillOval(x, y - 10, 16, 16);
-            g2d.setColor(state.getColor().darker());
-            g2d.drawOval(x, y - 10, 16, 16);
-            
-            g2d.setColor(new Color(44, 62, 80));
-            g2d.drawString(state.name().replace("_", " "), x + 25, y);
-            y += 20;
-        }
-        
-        y += 10;
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 12));
-        g2d.drawString("Message Types", x, y);
-        y += 18;
-        
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        
-        // Request arrow
-        g2d.setColor(new Color(52, 152, 219));
-        g2d.setStroke(new BasicStroke(3));
-        g2d.drawLine(x, y - 5, x + 20, y - 5);
-        ArrowDrawer.drawArrow(g2d, new Point(x, y - 5), new Point(x + 20, y - 5), new Color(52, 152, 219));
-        g2d.setColor(new Color(44, 62, 80));
-        g2d.drawString("REQUEST", x + 30, y);
-        y += 20;
-        
-        // Reply arrow
-        g2d.setColor(new Color(46, 204, 113));
-        g2d.setStroke(new BasicStroke(3));
-        g2d.drawLine(x, y - 5, x + 20, y - 5);
-        ArrowDrawer.drawArrow(g2d, new Point(x, y - 5), new Point(x + 20, y - 5), new Color(46, 204, 113));
-        g2d.setColor(new Color(44, 62, 80));
-        g2d.drawString("REPLY", x + 30, y);
-    }
-
-    private void drawStatistics(Graphics2D g2d) {
-        List<Node> nodes = Node.all();
-        if (nodes.isEmpty()) return;
-        
-        int x = getWidth() - 180;
-        int y = 25;
-        
-        // Background panel
-        g2d.setColor(new Color(255, 255, 255, 220));
-        g2d.fillRoundRect(x - 10, y - 15, 170, 100, 10, 10);
-        g2d.setColor(new Color(189, 195, 199));
-        g2d.setStroke(new BasicStroke(1));
-        g2d.drawRoundRect(x - 10, y - 15, 170, 100, 10, 10);
-        
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        g2d.setColor(new Color(44, 62, 80));
-        g2d.drawString("Network Status", x, y);
-        y += 25;
-        
-        g2d.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        g2d.drawString("Total Nodes: " + nodes.size(), x, y);
-        y += 18;
-        
-        long idleCount = nodes.stream().mapToLong(n -> n.getColor().equals(Node.NodeState.IDLE.getColor()) ? 1 : 0).sum();
-        long requestingCount = nodes.stream().mapToLong(n -> n.getColor().equals(Node.NodeState.REQUESTING.getColor()) ? 1 : 0).sum();
-        long inCSCount = nodes.stream().mapToLong(n -> n.getColor().equals(Node.NodeState.IN_CS.getColor()) ? 1 : 0).sum();
-        
-        g2d.drawString("Idle: " + idleCount, x, y);
-        y += 15;
-        g2d.drawString("Requesting: " + requestingCount, x, y);
-        y += 15;
-        g2d.drawString("In CS: " + inCSCount, x, y);
-    }
-
-    // Communication methods with enhanced visual feedback
-    public void showRequest(Node from, Node to) {
-        signalManager.showRequest(from, to);
-        repaint();
-        
-        Timer timer = new Timer(2500, e -> {
-            signalManager.resetCommunication(from, to);
-            repaint();
-        });
-        timer.setRepeats(false);
-        timer.start();
-    }
-
-    public void showReply(Node from, Node to) {
-        signalManager.showReply(from, to);
-        repaint();
-        
-        Timer timer = new Timer(2500, e -> {
-            signalManager.resetCommunication(from, to);
-            repaint();
-        });
-        timer.setRepeats(false);
-        timer.start();
-    }
-
-    public void resetCommunication(Node from, Node to) {
-        signalManager.resetCommunication(from, to);
-        repaint();
-    }
-   
-    void addNode(ActionEvent e) {
-        if(Node.all().size() >= 12) {
-            JOptionPane.showMessageDialog(
-                this,
-                "Maximum number of nodes (12) reached for optimal visualization!",
-                "Node Limit Reached",
-                JOptionPane.WARNING_MESSAGE
-            );
-            return;
-        }
-        
-        System.out.println("=== Adding new node ===");
-        Node newNode = Node.push(this);
-        
-        // Create edges to all existing nodes
-        for (Node other : Node.all()) {
-            if (other == newNode) continue;
-            Edge.add(other, newNode);
-        }
-        
-        newNode.start();
-        repaint();
-        System.out.println("Node " + newNode.getNodeId() + " added and started");
-    }
-
-    void removeNode(ActionEvent e) {
-        if (Node.all().isEmpty()) {
-            JOptionPane.showMessageDialog(
-                this,
-                "No nodes available to remove!",
-                "No Nodes",
-                JOptionPane.INFORMATION_MESSAGE
-            );
-            return;
-        }
-        
-        System.out.println("=== Removing node ===");
-        Node removed = Node.pull();
-        if (removed != null) {
-            Edge.remove(removed);
-            signalManager.clearNode(removed);
-            repaint();
-            System.out.println("Node " + removed.getNodeId() + " removed");
-        }
-    }
+package com.app;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The network view. Nothing outside the EDT repaints it directly: nodes and
+ * signals call {@link #markDirty()}, and a single frame timer repaints at most
+ * once per frame when something changed, expiring old signal arrows on the
+ * same tick. EDT load is therefore bounded by the frame rate, not by message
+ * traffic.
+ * <p>
+ * Painting allocates next to nothing per frame. Fonts, strokes and colors are
+ * constants. The legend, the idle edge mesh, the statistics panel and one node
+ * body per state are cached in images that are rebuilt only when their
+ * inputs change (membership, panel size, counts, screen scale).
+ * <p>
+ * Drag to pan, scroll to zoom and double-click to fit. Past
+ * {@link #LARGE_GRAPH_NODES} nodes, or when zoomed far out, the view switches
+ * to a cheaper level of detail: nodes become colored squares, signals plain
+ * lines, and the full mesh gives way to bundles between grid cells (see
+ * {@link #paintBundles}). Off-screen nodes are skipped.
+ * <p>
+ * With several {@code --resources} the view can be narrowed to one of them
+ * ({@link #resourceSelector}): nodes then show their state on that resource
+ * and only its messages are drawn. Unfiltered, a node shows its busiest state.
+ * <p>
+ * With a group size set ({@code --group-size}, implied by
+ * {@code --engine=hierarchical}), each group is outlined beneath the mesh and
+ * labelled with its representative, the lowest id in it.
+ */
+public class Graph extends JPanel {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_FPS = 60;
+    public static final int ALL_RESOURCES = -1;
+    private static final long SIGNAL_NANOS = 2_500_000_000L;
+
+    private final SignalManager signalManager;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final Timer frameTimer;
+
+    private static final Color BACKGROUND_COLOR = new Color(248, 249, 250);
+    private static final Color EDGE_COLOR = new Color(149, 165, 166);
+    private static final Color ACTIVE_EDGE_COLOR = new Color(52, 152, 219);
+    private static final Color TEXT_COLOR = new Color(44, 62, 80);
+    private static final Color PANEL_COLOR = new Color(255, 255, 255, 220);
+    private static final Color PANEL_BORDER_COLOR = new Color(189, 195, 199);
+    private static final Color NODE_SHADOW_COLOR = new Color(0, 0, 0, 30);
+    private static final Color TEXT_SHADOW_COLOR = new Color(0, 0, 0, 100);
+    private static final Color GROUP_COLOR = new Color(52, 152, 219, 18);
+    private static final Color GROUP_BORDER_COLOR = new Color(52, 152, 219, 120);
+    private static final Font NODE_FONT = new Font("Segoe UI", Font.BOLD, 18);
+    private static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 14);
+    private static final Font SECTION_FONT = new Font("Segoe UI", Font.BOLD, 12);
+    private static final Font TEXT_FONT = new Font("Segoe UI", Font.PLAIN, 12);
+    private static final Stroke EDGE_STROKE = new BasicStroke(1.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke ACTIVE_EDGE_STROKE = new BasicStroke(2.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke NODE_BORDER_STROKE = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final Stroke LEGEND_ARROW_STROKE = new BasicStroke(3);
+    private static final Stroke THIN_STROKE = new BasicStroke(1);
+    private static final RenderingHints QUALITY = new RenderingHints(null);
+    static {
+        QUALITY.put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        QUALITY.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        QUALITY.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    }
+
+    private static final int LEGEND_WIDTH = 250, LEGEND_HEIGHT = 190;
+    private static final int STATS_WIDTH = 170, STATS_HEIGHT = 100;
+    private static final int SPRITE_SIZE = 72, SPRITE_ORIGIN = 34;
+
+    private static final int LARGE_GRAPH_NODES = 150;
+    private static final double MIN_DETAIL_ZOOM = 0.35;
+    private static final double MIN_ZOOM = 0.02, MAX_ZOOM = 8;
+    private static final int MAX_SIGNAL_LINES = 5000;
+    private static final int BUNDLE_CELLS = 16;
+    private static final int MAX_BUNDLES = 400;
+    private static final int BUNDLE_LEVELS = 8;
+    private static final Color[] BUNDLE_COLORS = new Color[BUNDLE_LEVELS];
+    private static final Stroke[] BUNDLE_STROKES = new Stroke[BUNDLE_LEVELS];
+    static {
+        for (int i = 0; i < BUNDLE_LEVELS; i++) {
+            BUNDLE_COLORS[i] = new Color(EDGE_COLOR.getRed(), EDGE_COLOR.getGreen(), EDGE_COLOR.getBlue(), 50 + 25 * i);
+            BUNDLE_STROKES[i] = new BasicStroke(1 + i * 0.75f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        }
+    }
+
+    // View transform, EDT only
+    private double zoom = 1, panX = 0, panY = 0;
+    private volatile int resource = ALL_RESOURCES;
+    private volatile int groupSize = 0;
+
+    // Cached layers, touched only on the EDT
+    private double layerScale = 1;
+    private BufferedImage legendLayer;
+    private BufferedImage edgeLayer;
+    private int edgeLayerVersion = -1, edgeLayerWidth, edgeLayerHeight;
+    private boolean edgeLayerLarge;
+    private double edgeLayerZoom, edgeLayerPanX, edgeLayerPanY;
+    private float[] bundles = new float[0]; // x1, y1, x2, y2, weight per bundle
+    private int bundleCount, bundleVersion = -1;
+    private BufferedImage statsLayer;
+    private final int[] statsCounts = new int[4];
+    private BufferedImage[] nodeSprites; // Rendered at the current zoom
+    private double spriteZoom;
+    private Font labelFont;
+    private String[] labels = new String[64];
+
+    public Graph() {
+        this(DEFAULT_FPS);
+    }
+
+    public Graph(int fps) {
+        this.signalManager = new SignalManager();
+        setPreferredSize(new Dimension(900, 650));
+        setBackground(BACKGROUND_COLOR);
+        frameTimer = new Timer(Math.max(1, 1000 / fps), e -> frame());
+        frameTimer.start();
+        installNavigation();
+    }
+
+    /** Outlines groups of {@code groupSize} consecutive node ids; 0 draws none. */
+    public void setGroupSize(int groupSize) {
+        this.groupSize = groupSize;
+        edgeLayer = null;
+        markDirty();
+    }
+
+    /** Requests a repaint on the next frame; safe from any thread and free when already pending. */
+    public void markDirty() {
+        if (!dirty.get()) dirty.set(true);
+    }
+
+    private void frame() {
+        boolean expired = signalManager.expire(System.nanoTime());
+        if (dirty.getAndSet(false) | expired) {
+            repaint();
+        }
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+
+        double scale = g2d.getTransform().getScaleX();
+        if (scale != layerScale) {
+            // Moved to a screen with another DPI: every cached layer is the wrong size
+            layerScale = scale;
+            legendLayer = null;
+            edgeLayer = null;
+            statsLayer = null;
+            nodeSprites = null;
+        }
+
+        // Enable high-quality rendering
+        g2d.setRenderingHints(QUALITY);
+
+        List<Node> nodes = Node.all();
+        boolean large = nodes.size() > LARGE_GRAPH_NODES;
+        boolean detailed = zoom >= MIN_DETAIL_ZOOM && !large;
+        SignalInfo[] signals = signalManager.snapshot();
+
+        drawEdges(g2d, large);
+        if (detailed) {
+            // Full detail: draw the network in world coordinates
+            AffineTransform screen = g2d.getTransform();
+            g2d.translate(panX, panY);
+            g2d.scale(zoom, zoom);
+            drawActiveEdges(g2d, signals);
+            drawSignalArrows(g2d, signals);
+            g2d.setTransform(screen);
+            drawNodes(g2d, nodes);
+        } else {
+            drawSignalLines(g2d, signals);
+            drawNodeDots(g2d, nodes);
+        }
+        drawLegend(g2d);
+        drawStatistics(g2d);
+    }
+
+    // --- View: screen = world * zoom + pan ---
+
+    private double worldX(int screenX) { return (screenX - panX) / zoom; }
+    private double worldY(int screenY) { return (screenY - panY) / zoom; }
+    private int screenX(int worldX) { return (int) (worldX * zoom + panX); }
+    private int screenY(int worldY) { return (int) (worldY * zoom + panY); }
+
+    private boolean onScreen(int worldX, int worldY, int margin) {
+        int x = screenX(worldX), y = screenY(worldY);
+        return x >= -margin && y >= -margin && x <= getWidth() + margin && y <= getHeight() + margin;
+    }
+
+    private void zoomAt(int screenX, int screenY, double factor) {
+        double wx = worldX(screenX), wy = worldY(screenY);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        panX = screenX - wx * zoom;
+        panY = screenY - wy * zoom;
+        markDirty();
+    }
+
+    /** Zooms and pans so every node is visible; a cluster that already fits is shown at 1:1. */
+    public void fitView() {
+        List<Node> nodes = Node.all();
+        zoom = 1;
+        panX = panY = 0;
+        if (!nodes.isEmpty()) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (Node node : nodes) {
+                minX = Math.min(minX, node.getX());
+                minY = Math.min(minY, node.getY());
+                maxX = Math.max(maxX, node.getX());
+                maxY = Math.max(maxY, node.getY());
+            }
+            int margin = 60;
+            if (minX < margin || minY < margin || maxX > getWidth() - margin || maxY > getHeight() - margin) {
+                zoom = Math.max(MIN_ZOOM, Math.min(1, Math.min(
+                    (getWidth() - 2.0 * margin) / Math.max(1, maxX - minX),
+                    (getHeight() - 2.0 * margin) / Math.max(1, maxY - minY))));
+                panX = (getWidth() - (minX + maxX) * zoom) / 2;
+                panY = (getHeight() - (minY + maxY) * zoom) / 2;
+            }
+        }
+        markDirty();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        Node node = Node.nodeAt((int) worldX(e.getX()), (int) worldY(e.getY()));
+        return node == null ? null : "Node " + node.getNodeId() + ": " + node.getState().name().replace("_", " ");
+    }
+
+    private void installNavigation() {
+        MouseAdapter navigation = new MouseAdapter() {
+            private Point last;
+
+            @Override public void mousePressed(MouseEvent e) { last = e.getPoint(); }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (last == null) return;
+                panX += e.getX() - last.x;
+                panY += e.getY() - last.y;
+                last = e.getPoint();
+                markDirty();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(), Math.pow(1.1, -e.getPreciseWheelRotation()));
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) fitView();
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+        setToolTipText(""); // Registers with the tooltip manager; text comes from getToolTipText(MouseEvent)
+    }
+
+    /** Blank translucent layer of {@code width x height} logical pixels at the current scale. */
+    private BufferedImage createLayer(int width, int height) {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        int w = (int) Math.ceil(width * layerScale);
+        int h = (int) Math.ceil(height * layerScale);
+        return config != null
+            ? config.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+            : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private Graphics2D paintLayer(BufferedImage layer) {
+        Graphics2D g2d = layer.createGraphics();
+        g2d.setRenderingHints(QUALITY);
+        g2d.scale(layerScale, layerScale);
+        return g2d;
+    }
+
+    private void drawLayer(Graphics2D g2d, BufferedImage layer, int x, int y) {
+        g2d.drawImage(layer, x, y, (int) Math.round(layer.getWidth() / layerScale),
+            (int) Math.round(layer.getHeight() / layerScale), null);
+    }
+
+    /**
+     * The idle mesh (or, for large graphs, its bundles) only changes with
+     * membership, panel size and view, so it is rendered once into a layer.
+     */
+    private void drawEdges(Graphics2D g2d, boolean large) {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (edgeLayer == null || edgeLayerVersion != Edge.version() || edgeLayerLarge != large
+                || edgeLayerWidth != width || edgeLayerHeight != height
+                || edgeLayerZoom != zoom || edgeLayerPanX != panX || edgeLayerPanY != panY) {
+            if (edgeLayer == null || edgeLayerWidth != width || edgeLayerHeight != height) {
+                edgeLayer = createLayer(width, height);
+            }
+            edgeLayerVersion = Edge.version();
+            edgeLayerLarge = large;
+            edgeLayerWidth = width;
+            edgeLayerHeight = height;
+            edgeLayerZoom = zoom;
+            edgeLayerPanX = panX;
+            edgeLayerPanY = panY;
+
+            Graphics2D layer = paintLayer(edgeLayer);
+            layer.setComposite(AlphaComposite.Clear);
+            layer.fillRect(0, 0, width, height);
+            layer.setComposite(AlphaComposite.SrcOver);
+            if (groupSize > 0) {
+                paintGroups(layer);
+            }
+            if (large) {
+                paintBundles(layer);
+            } else {
+                layer.translate(panX, panY);
+                layer.scale(zoom, zoom);
+                layer.setColor(EDGE_COLOR);
+                layer.setStroke(EDGE_STROKE);
+                for (Edge edge : Edge.all()) {
+                    layer.drawLine(edge.getFrom().getX(), edge.getFrom().getY(), edge.getTo().getX(), edge.getTo().getY());
+                }
+            }
+            layer.dispose();
+        }
+        drawLayer(g2d, edgeLayer, 0, 0);
+    }
+
+    /** A rounded box around each group's nodes, in screen coordinates so the label stays readable when zoomed out. */
+    private void paintGroups(Graphics2D layer) {
+        List<Node> nodes = Node.all();
+        int size = groupSize;
+        int groups = 0;
+        for (Node node : nodes) groups = Math.max(groups, node.getNodeId() / size + 1);
+        int[] bounds = new int[groups * 5]; // minX, minY, maxX, maxY, representative
+        Arrays.fill(bounds, Integer.MAX_VALUE);
+        for (int g = 0; g < groups; g++) {
+            bounds[g * 5 + 2] = bounds[g * 5 + 3] = Integer.MIN_VALUE;
+        }
+        for (Node node : nodes) {
+            int i = node.getNodeId() / size * 5;
+            bounds[i] = Math.min(bounds[i], node.getX());
+            bounds[i + 1] = Math.min(bounds[i + 1], node.getY());
+            bounds[i + 2] = Math.max(bounds[i + 2], node.getX());
+            bounds[i + 3] = Math.max(bounds[i + 3], node.getY());
+            bounds[i + 4] = Math.min(bounds[i + 4], node.getNodeId());
+        }
+
+        int pad = (int) Math.ceil((Node.RADIUS + 15) * zoom);
+        layer.setFont(TEXT_FONT);
+        layer.setStroke(THIN_STROKE);
+        for (int g = 0; g < groups; g++) {
+            int i = g * 5;
+            if (bounds[i] == Integer.MAX_VALUE) continue; // Empty: every member left
+            int x = screenX(bounds[i]) - pad, y = screenY(bounds[i + 1]) - pad;
+            int w = screenX(bounds[i + 2]) + pad - x, h = screenY(bounds[i + 3]) + pad - y;
+            if (x > getWidth() || y > getHeight() || x + w < 0 || y + h < 0) continue;
+            layer.setColor(GROUP_COLOR);
+            layer.fillRoundRect(x, y, w, h, 16, 16);
+            layer.setColor(GROUP_BORDER_COLOR);
+            layer.drawRoundRect(x, y, w, h, 16, 16);
+            layer.setColor(TEXT_COLOR);
+            layer.drawString("Group " + g + " (Node " + bounds[i + 4] + ")", x + 6, y - 4);
+        }
+    }
+
+    /**
+     * Level of detail for large graphs: instead of O(N²) lines, nodes are
+     * grouped into a coarse grid of cells and the heaviest cell-to-cell edge
+     * counts are drawn as single lines between cell centroids, thicker and
+     * darker the more edges they stand for.
+     */
+    private void paintBundles(Graphics2D layer) {
+        if (bundleVersion != Edge.version()) {
+            computeBundles();
+            bundleVersion = Edge.version();
+        }
+        for (int i = 0; i < bundleCount; i++) {
+            int level = (int) (bundles[i * 5 + 4] * (BUNDLE_LEVELS - 1));
+            layer.setColor(BUNDLE_COLORS[level]);
+            layer.setStroke(BUNDLE_STROKES[level]);
+            layer.drawLine(screenX((int) bundles[i * 5]), screenY((int) bundles[i * 5 + 1]),
+                screenX((int) bundles[i * 5 + 2]), screenY((int) bundles[i * 5 + 3]));
+        }
+    }
+
+    private void computeBundles() {
+        List<Node> nodes = Node.all();
+        bundleCount = 0;
+        if (nodes.isEmpty()) return;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        int maxId = 0;
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.getX());
+            minY = Math.min(minY, node.getY());
+            maxX = Math.max(maxX, node.getX());
+            maxY = Math.max(maxY, node.getY());
+            maxId = Math.max(maxId, node.getNodeId());
+        }
+        double cellWidth = Math.max(1, (maxX - minX + 1) / (double) BUNDLE_CELLS);
+        double cellHeight = Math.max(1, (maxY - minY + 1) / (double) BUNDLE_CELLS);
+        int cells = BUNDLE_CELLS * BUNDLE_CELLS;
+        int[] cellOf = new int[maxId + 1];
+        long[] sumX = new long[cells], sumY = new long[cells];
+        int[] members = new int[cells];
+        for (Node node : nodes) {
+            int cx = Math.min(BUNDLE_CELLS - 1, (int) ((node.getX() - minX) / cellWidth));
+            int cy = Math.min(BUNDLE_CELLS - 1, (int) ((node.getY() - minY) / cellHeight));
+            int cell = cy * BUNDLE_CELLS + cx;
+            cellOf[node.getNodeId()] = cell;
+            sumX[cell] += node.getX();
+            sumY[cell] += node.getY();
+            members[cell]++;
+        }
+
+        int[] counts = new int[cells * cells];
+        for (Edge edge : Edge.all()) {
+            int a = cellOf[edge.getFrom().getNodeId()];
+            int b = cellOf[edge.getTo().getNodeId()];
+            if (a == b) continue; // Inside one cell: the node dots already show it
+            counts[Math.min(a, b) * cells + Math.max(a, b)]++;
+        }
+
+        // Keep the heaviest pairs: sort (count, pair) packed into longs
+        int pairs = 0;
+        for (int count : counts) if (count > 0) pairs++;
+        long[] ranked = new long[pairs];
+        int n = 0;
+        for (int pair = 0; pair < counts.length; pair++) {
+            if (counts[pair] > 0) ranked[n++] = ((long) counts[pair] << 32) | pair;
+        }
+        Arrays.sort(ranked);
+        bundleCount = Math.min(MAX_BUNDLES, pairs);
+        if (bundles.length < bundleCount * 5) bundles = new float[bundleCount * 5];
+        double heaviest = pairs == 0 ? 1 : ranked[pairs - 1] >>> 32;
+        for (int i = 0; i < bundleCount; i++) {
+            long entry = ranked[pairs - 1 - i];
+            int pair = (int) entry;
+            int a = pair / cells, b = pair % cells;
+            bundles[i * 5] = (float) sumX[a] / members[a];
+            bundles[i * 5 + 1] = (float) sumY[a] / members[a];
+            bundles[i * 5 + 2] = (float) sumX[b] / members[b];
+            bundles[i * 5 + 3] = (float) sumY[b] / members[b];
+            bundles[i * 5 + 4] = (float) ((entry >>> 32) / heaviest);
+        }
+    }
+
+    private void drawActiveEdges(Graphics2D g2d, SignalInfo[] signals) {
+        g2d.setColor(ACTIVE_EDGE_COLOR);
+        g2d.setStroke(ACTIVE_EDGE_STROKE);
+        for (SignalInfo signal : signals) {
+            g2d.drawLine(signal.from.getX(), signal.from.getY(), signal.to.getX(), signal.to.getY());
+        }
+    }
+
+    private void drawSignalArrows(Graphics2D g2d, SignalInfo[] signals) {
+        for (SignalInfo signal : signals) {
+            ArrowDrawer.drawArrow(g2d, signal.from.getX(), signal.from.getY(),
+                signal.to.getX(), signal.to.getY(), signal.signalColor);
+        }
+    }
+
+    /** Zoomed-out signals: plain screen-space lines, no arrowheads, capped per frame. */
+    private void drawSignalLines(Graphics2D g2d, SignalInfo[] signals) {
+        g2d.setStroke(THIN_STROKE);
+        for (int i = 0; i < Math.min(signals.length, MAX_SIGNAL_LINES); i++) {
+            SignalInfo signal = signals[i];
+            g2d.setColor(signal.signalColor);
+            g2d.drawLine(screenX(signal.from.getX()), screenY(signal.from.getY()),
+                screenX(signal.to.getX()), screenY(signal.to.getY()));
+        }
+    }
+
+    /** Zoomed-out nodes: a square in the state color, no sprite or label. */
+    private void drawNodeDots(Graphics2D g2d, List<Node> nodes) {
+        int size = Math.max(3, (int) (2 * Node.RADIUS * zoom));
+        for (Node node : nodes) {
+            if (!onScreen(node.getX(), node.getY(), size)) continue;
+            g2d.setColor(node.getState().getColor());
+            g2d.fillRect(screenX(node.getX()) - size / 2, screenY(node.getY()) - size / 2, size, size);
+        }
+    }
+
+    private void drawNodes(Graphics2D g2d, List<Node> nodes) {
+        if (nodeSprites == null || spriteZoom != zoom) {
+            // Re-rendered per zoom level so every node is a 1:1 blit rather than a scaled draw
+            spriteZoom = zoom;
+            labelFont = NODE_FONT.deriveFont((float) (NODE_FONT.getSize2D() * zoom));
+            nodeSprites = new BufferedImage[Node.NodeState.values().length];
+            for (Node.NodeState state : Node.NodeState.values()) {
+                nodeSprites[state.ordinal()] = createNodeSprite(state.getColor());
+            }
+        }
+        g2d.setFont(labelFont);
+        FontMetrics fm = g2d.getFontMetrics();
+        int textHeight = fm.getAscent();
+        int origin = (int) Math.round(SPRITE_ORIGIN * zoom);
+        int margin = (int) (SPRITE_SIZE * zoom) + 1;
+
+        for (Node node : nodes) {
+            if (!onScreen(node.getX(), node.getY(), margin)) continue;
+            int x = screenX(node.getX());
+            int y = screenY(node.getY());
+            drawLayer(g2d, nodeSprites[node.getState().ordinal()], x - origin, y - origin);
+
+            // Draw node ID with better contrast
+            String id = label(node.getNodeId());
+            int textWidth = fm.stringWidth(id);
+
+            // Text shadow
+            g2d.setColor(TEXT_SHADOW_COLOR);
+            g2d.drawString(id, x - textWidth / 2 + 1, y + textHeight / 4 + 1);
+
+            // Main text
+            g2d.setColor(Color.WHITE);
+            g2d.drawString(id, x - textWidth / 2, y + textHeight / 4);
+        }
+    }
+
+    /** A node body without its label at the current zoom, centred at {@link #SPRITE_ORIGIN} scaled by the zoom. */
+    private BufferedImage createNodeSprite(Color nodeColor) {
+        int size = (int) Math.ceil(SPRITE_SIZE * zoom);
+        BufferedImage sprite = createLayer(size, size);
+        Graphics2D g2d = paintLayer(sprite);
+        g2d.translate(Math.round(SPRITE_ORIGIN * zoom), Math.round(SPRITE_ORIGIN * zoom));
+        g2d.scale(zoom, zoom);
+
+        // Draw node shadow for depth
+        g2d.setColor(NODE_SHADOW_COLOR);
+        g2d.fillOval(-32, -28, 64, 64);
+
+        // Draw node circle with gradient effect
+        g2d.setColor(nodeColor);
+        g2d.fillOval(-30, -30, 60, 60);
+
+        // Add subtle inner highlight
+        g2d.setColor(nodeColor.brighter());
+        g2d.fillOval(-25, -25, 20, 20);
+
+        // Draw node border
+        g2d.setColor(nodeColor.darker());
+        g2d.setStroke(NODE_BORDER_STROKE);
+        g2d.drawOval(-30, -30, 60, 60);
+        g2d.dispose();
+        return sprite;
+    }
+
+    private String label(int nodeId) {
+        if (nodeId >= labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(nodeId + 1, labels.length * 2));
+        }
+        String label = labels[nodeId];
+        if (label == null) {
+            label = labels[nodeId] = String.valueOf(nodeId);
+        }
+        return label;
+    }
+
+    private void drawLegend(Graphics2D g2d) {
+        if (legendLayer == null) {
+            legendLayer = createLayer(LEGEND_WIDTH + 1, LEGEND_HEIGHT + 1);
+            Graphics2D layer = paintLayer(legendLayer);
+            paintLegend(layer);
+            layer.dispose();
+        }
+        drawLayer(g2d, legendLayer, 5, 10);
+    }
+
+    /** Legend content in layer coordinates: the panel's top-left corner is (0, 0). */
+    private static void paintLegend(Graphics2D g2d) {
+        int x = 10, y = 15;
+        int spacing = 25;
+
+        // Background panel for legend
+        g2d.setColor(PANEL_COLOR);
+        g2d.fillRoundRect(x - 10, y - 15, LEGEND_WIDTH, LEGEND_HEIGHT, 10, 10);
+        g2d.setColor(PANEL_BORDER_COLOR);
+        g2d.setStroke(THIN_STROKE);
+        g2d.drawRoundRect(x - 10, y - 15, LEGEND_WIDTH, LEGEND_HEIGHT, 10, 10);
+
+        g2d.setFont(TITLE_FONT);
+        g2d.setColor(TEXT_COLOR);
+        g2d.drawString("Node States", x, y);
+        y += spacing;
+
+        g2d.setFont(TEXT_FONT);
+
+        // Node states
+        for (Node.NodeState state : Node.NodeState.values()) {
+            g2d.setColor(state.getColor());
+            g2d.fillOval(x, y - 10, 16, 16);
+            g2d.setColor(state.getColor().darker());
+            g2d.drawOval(x, y - 10, 16, 16);
+
+            g2d.setColor(TEXT_COLOR);
+            g2d.drawString(state.name().replace("_", " "), x + 25, y);
+            y += 20;
+        }
+
+        y += 10;
+        g2d.setFont(SECTION_FONT);
+        g2d.drawString("Message Types", x, y);
+        y += 18;
+
+        g2d.setFont(TEXT_FONT);
+        y = legendArrow(g2d, x, y, SignalManager.REQUEST_COLOR, "REQUEST");
+        y = legendArrow(g2d, x, y, SignalManager.REPLY_COLOR, "REPLY");
+        // Quorum and hierarchical control arrow (RELEASE, FAILED, INQUIRE, YIELD, GLOBAL_REQUEST, GLOBAL_REPLY)
+        legendArrow(g2d, x, y, SignalManager.CONTROL_COLOR, "CONTROL");
+    }
+
+    private static int legendArrow(Graphics2D g2d, int x, int y, Color color, String label) {
+        g2d.setColor(color);
+        g2d.setStroke(LEGEND_ARROW_STROKE);
+        g2d.drawLine(x, y - 5, x + 20, y - 5);
+        ArrowDrawer.drawArrow(g2d, x, y - 5, x + 20, y - 5, color);
+        g2d.setColor(TEXT_COLOR);
+        g2d.drawString(label, x + 30, y);
+        return y + 20;
+    }
+
+    private void drawStatistics(Graphics2D g2d) {
+        List<Node> nodes = Node.all();
+        if (nodes.isEmpty()) return;
+
+        int idleCount = 0, requestingCount = 0, inCSCount = 0;
+        for (Node node : nodes) {
+            switch (node.getState()) {
+                case IDLE: idleCount++; break;
+                case REQUESTING: requestingCount++; break;
+                default: inCSCount++; break;
+            }
+        }
+
+        // Only the numbers change, and only re-rendered when they do
+        if (statsLayer == null || statsCounts[0] != nodes.size() || statsCounts[1] != idleCount
+                || statsCounts[2] != requestingCount || statsCounts[3] != inCSCount) {
+            statsCounts[0] = nodes.size();
+            statsCounts[1] = idleCount;
+            statsCounts[2] = requestingCount;
+            statsCounts[3] = inCSCount;
+            if (statsLayer == null) statsLayer = createLayer(STATS_WIDTH + 1, STATS_HEIGHT + 1);
+            Graphics2D layer = paintLayer(statsLayer);
+            layer.setComposite(AlphaComposite.Clear);
+            layer.fillRect(0, 0, STATS_WIDTH + 1, STATS_HEIGHT + 1);
+            layer.setComposite(AlphaComposite.SrcOver);
+            paintStatistics(layer, statsCounts);
+            layer.dispose();
+        }
+        drawLayer(g2d, statsLayer, getWidth() - 190, 10);
+    }
+
+    /** Statistics panel in layer coordinates: the panel's top-left corner is (0, 0). */
+    private static void paintStatistics(Graphics2D g2d, int[] counts) {
+        int x = 10;
+        int y = 15;
+
+        // Background panel
+        g2d.setColor(PANEL_COLOR);
+        g2d.fillRoundRect(x - 10, y - 15, STATS_WIDTH, STATS_HEIGHT, 10, 10);
+        g2d.setColor(PANEL_BORDER_COLOR);
+        g2d.setStroke(THIN_STROKE);
+        g2d.drawRoundRect(x - 10, y - 15, STATS_WIDTH, STATS_HEIGHT, 10, 10);
+
+        g2d.setFont(TITLE_FONT);
+        g2d.setColor(TEXT_COLOR);
+        g2d.drawString("Network Status", x, y);
+        y += 25;
+
+        g2d.setFont(TEXT_FONT);
+        g2d.drawString("Total Nodes: " + counts[0], x, y);
+        y += 18;
+
+        g2d.drawString("Idle: " + counts[1], x, y);
+        y += 15;
+        g2d.drawString("Requesting: " + counts[2], x, y);
+        y += 15;
+        g2d.drawString("In CS: " + counts[3], x, y);
+    }
+
+    // Communication methods; arrows expire on their own after SIGNAL_NANOS
+    public void showRequest(Node from, Node to) {
+        signalManager.showRequest(from, to, System.nanoTime() + SIGNAL_NANOS);
+        markDirty();
+    }
+
+    public void showReply(Node from, Node to) {
+        signalManager.showReply(from, to, System.nanoTime() + SIGNAL_NANOS);
+        markDirty();
+    }
+
+    /** The resource shown, or {@link #ALL_RESOURCES}. */
+    public int resource() {
+        return resource;
+    }
+
+    public void setResource(int resource) {
+        this.resource = resource;
+        clearSignals();
+    }
+
+    /** A drop-down over "All resources" and each of {@code count} resources, bound to this view. */
+    public JComboBox<String> resourceSelector(int count) {
+        JComboBox<String> selector = new JComboBox<>();
+        selector.addItem("All resources");
+        for (int r = 0; r < count; r++) selector.addItem("Resource " + r);
+        selector.setSelectedIndex(resource + 1);
+        selector.addActionListener(e -> setResource(selector.getSelectedIndex() - 1));
+        return selector;
+    }
+
+    /** As {@link #showMessage(Node, Node, Message.Type)}, unless the view is filtered to another resource. */
+    public void showMessage(Node from, Node to, Message.Type type, int resource) {
+        int shown = this.resource;
+        if (shown == ALL_RESOURCES || shown == resource) showMessage(from, to, type);
+    }
+
+    /** Shows any protocol message; quorum engines' control traffic and the hierarchical engine's upper level get their own color. */
+    public void showMessage(Node from, Node to, Message.Type type) {
+        switch (type) {
+            case REQUEST:
+            case READ_REQUEST:
+                showRequest(from, to);
+                break;
+            case REPLY:
+                showReply(from, to);
+                break;
+            default:
+                signalManager.showControl(from, to, type, System.nanoTime() + SIGNAL_NANOS);
+                markDirty();
+                break;
+        }
+    }
+
+    public void clearSignals() {
+        signalManager.clear();
+        markDirty();
+    }
+
+    public void resetCommunication(Node from, Node to) {
+        signalManager.resetCommunication(from, to);
+        markDirty();
+    }
+   
+    void addNode(ActionEvent e) {
+        System.out.println("=== Adding new node ===");
+        Node newNode = Node.push(this);
+        
+        // Create edges to all existing nodes
+        for (Node other : Node.all()) {
+            if (other == newNode) continue;
+            Edge.add(other, newNode);
+        }
+        
+        newNode.start();
+        markDirty();
+        System.out.println("Node " + newNode.getNodeId() + " added and started");
+    }
+
+    /** Adds {@code count} nodes and fits the view around the grown cluster. */
+    void addNodes(int count) {
+        for (int i = 0; i < count; i++) {
+            addNode(null);
+        }
+        fitView();
+    }
+
+    void removeNode(ActionEvent e) {
+        if (Node.all().isEmpty()) {
+            JOptionPane.showMessageDialog(
+                this,
+                "No nodes available to remove!",
+                "No Nodes",
+                JOptionPane.INFORMATION_MESSAGE
+            );
+            return;
+        }
+        
+        System.out.println("=== Removing node ===");
+        Node removed = Node.pull();
+        if (removed != null) {
+            Edge.remove(removed);
+            signalManager.clearNode(removed);
+            markDirty();
+            System.out.println("Node " + removed.getNodeId() + " removed");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,353 @@
+package com.app;
+
+import java.util.Arrays;
+
+import com.app.Node.NodeState;
+
+/**
+ * Two-level Ricart-Agrawala for large clusters. Members are split by id into
+ * groups of {@code --group-size}, and the lowest id in each group represents
+ * it. A request first runs Ricart-Agrawala within the requester's group,
+ * which lets one member through at a time; that member then asks its
+ * representative (GLOBAL_REQUEST), which competes on its behalf in a second
+ * Ricart-Agrawala among the representatives and answers (GLOBAL_REPLY) once
+ * it has won. On exit the member sends the representative a RELEASE and
+ * releases its group. With groups of about √N an entry costs O(√N) messages
+ * instead of O(N), and most of them stay within a group.
+ * <p>
+ * Both levels run the published algorithm ({@code keepRequests}), so nothing
+ * is given up and retried; only DEFERRED events of the inner instances reach
+ * the host. A representative is busy for one member at a time: the next local
+ * winner can only ask after the current one released its group, but its
+ * GLOBAL_REQUEST may overtake that member's RELEASE, so it waits in a single
+ * slot.
+ * <p>
+ * Groups are computed from the current membership, when we request or, as
+ * representative, compete for a member; so as with {@link Maekawa}, nodes
+ * joining or leaving while requests are in flight can briefly disagree on
+ * who represents a group. A member waiting on a representative that leaves
+ * asks the next one instead, and a global request in flight waits on that
+ * successor too before it enters. The successor takes over whatever global
+ * permission the old representative held: it holds other groups' global
+ * requests back until a member of its group, itself included, holds the
+ * local level, so that no member can still be inside on the old one's
+ * grant. Until then it answers none of them, and it asks for the local level
+ * itself if it has nothing to request. A node that does not represent its
+ * group yet holds them back the same way, since they come from
+ * representatives that found out first.
+ */
+public class Hierarchical implements MutualExclusion {
+    private static final int NONE = -1;
+
+    private final int nodeId;
+    private final int groupSize;
+    private final Host host;
+    private final RicartAgrawala local;
+    private final RicartAgrawala global; // Only used while we represent our group
+    private volatile NodeState currentState = NodeState.IDLE;
+
+    private int[] membersSource;
+    private int[] group = new int[0];
+    private int[] representatives = new int[0];
+    private int representative;
+    private boolean asked; // Won our group and sent (or started) the global request
+    private boolean takingOver; // Became representative; a member may still be inside on the old one's grant
+
+    // Other groups' global requests held back while we take over, or before we represent our group
+    private int[] heldFrom = new int[4];
+    private long[] heldAt = new long[4];
+    private int held;
+
+    // Representative side: the member the global level is won or being won for, and the one after it
+    private int beneficiary = NONE;
+    private int next = NONE;
+
+    public Hierarchical(int nodeId, Host host, int groupSize) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.groupSize = groupSize;
+        this.representative = nodeId;
+        this.local = new RicartAgrawala(nodeId, new Level(true), false, true);
+        this.global = new RicartAgrawala(nodeId, new Level(false), false, true);
+    }
+
+    /** How an inner instance reaches the host: its own messages, its deferrals, and its entry. */
+    private final class Level implements Host {
+        private final boolean local;
+
+        Level(boolean local) {
+            this.local = local;
+        }
+
+        @Override
+        public void send(int toNodeId, Message.Type type, long timestamp) {
+            if (!local) type = type == Message.Type.REQUEST ? Message.Type.GLOBAL_REQUEST : Message.Type.GLOBAL_REPLY;
+            host.send(toNodeId, type, timestamp);
+        }
+
+        @Override
+        public void enterCriticalSection() {
+            if (local) {
+                wonGroup();
+            } else {
+                grant(beneficiary);
+            }
+        }
+
+        @Override
+        public void stateChanged() { }
+
+        @Override
+        public int[] members() {
+            return host.members();
+        }
+
+        @Override
+        public void record(EventLog.Event event, int peer) {
+            if (event == EventLog.Event.DEFERRED) host.record(event, peer);
+        }
+    }
+
+    @Override public NodeState getState() { return currentState; }
+    @Override public long getClock() { return local.getClock(); }
+
+    public int groupOf(int id) { return id / groupSize; }
+
+    @Override
+    public boolean request(int[] members) {
+        if (currentState != NodeState.IDLE) {
+            return false;
+        }
+        layOut(members);
+        currentState = NodeState.REQUESTING;
+        asked = false;
+        host.record(EventLog.Event.REQUESTED, -1);
+        host.stateChanged();
+        local.request(group);
+        return true;
+    }
+
+    /** Our group and every group's representative, ourselves included; kept while {@code members} is the same array. */
+    private void layOut(int[] members) {
+        if (members == membersSource) return;
+        membersSource = members;
+        int groups = groupOf(nodeId) + 1;
+        for (int id : members) groups = Math.max(groups, groupOf(id) + 1);
+        int[] lowest = new int[groups];
+        Arrays.fill(lowest, Integer.MAX_VALUE);
+        lowest[groupOf(nodeId)] = nodeId;
+        int size = 1;
+        for (int id : members) {
+            lowest[groupOf(id)] = Math.min(lowest[groupOf(id)], id);
+            if (id != nodeId && groupOf(id) == groupOf(nodeId)) size++;
+        }
+
+        group = new int[size];
+        group[0] = nodeId;
+        size = 1;
+        for (int id : members) {
+            if (id != nodeId && groupOf(id) == groupOf(nodeId)) group[size++] = id;
+        }
+        int count = 0;
+        for (int id : lowest) {
+            if (id != Integer.MAX_VALUE) count++;
+        }
+        representatives = new int[count];
+        count = 0;
+        for (int id : lowest) {
+            if (id != Integer.MAX_VALUE) representatives[count++] = id;
+        }
+        representative = lowest[groupOf(nodeId)];
+    }
+
+    /** Our group let us through; now the group has to win among the others. */
+    private void wonGroup() {
+        if (takingOver) {
+            takenOver(); // We hold the local level, so no member is inside
+            if (currentState != NodeState.REQUESTING) {
+                local.exit(); // Only asked to find that out
+                return;
+            }
+        }
+        asked = true;
+        if (representative == nodeId) {
+            compete(nodeId);
+        } else {
+            host.send(representative, Message.Type.GLOBAL_REQUEST, local.getClock());
+        }
+    }
+
+    /** As representative, starts competing for {@code member}, or queues it behind the one we compete for. */
+    private void compete(int member) {
+        if (takingOver) takenOver(); // It holds the local level, so no other member is inside
+        if (beneficiary != NONE) {
+            next = member;
+            return;
+        }
+        beneficiary = member;
+        layOut(host.members()); // We may never have requested ourselves
+        global.request(representatives);
+    }
+
+    /** The global level is ours; let the member we won it for in. */
+    private void grant(int member) {
+        if (member == nodeId) {
+            enter();
+        } else {
+            host.send(member, Message.Type.GLOBAL_REPLY, 0);
+        }
+    }
+
+    /** {@code member} is done (or gone); hand the global level on. */
+    private void released(int member) {
+        if (member != beneficiary) return;
+        beneficiary = NONE;
+        global.exit();
+        if (next != NONE) {
+            int waiting = next;
+            next = NONE;
+            compete(waiting);
+        }
+    }
+
+    private void enter() {
+        currentState = NodeState.IN_CS;
+        host.record(EventLog.Event.ENTERED, -1);
+        host.stateChanged();
+        host.enterCriticalSection();
+    }
+
+    @Override
+    public void receive(int fromNodeId, Message.Type type, long timestamp) {
+        boolean sameGroup = groupOf(fromNodeId) == groupOf(nodeId);
+        switch (type) {
+            case REQUEST:
+            case REPLY:
+                local.receive(fromNodeId, type, timestamp);
+                break;
+            case GLOBAL_REQUEST:
+                if (sameGroup) {
+                    compete(fromNodeId);
+                } else {
+                    layOut(host.members());
+                    if (takingOver || representative != nodeId) {
+                        holdBack(fromNodeId, timestamp);
+                    } else {
+                        global.receive(fromNodeId, Message.Type.REQUEST, timestamp);
+                    }
+                }
+                break;
+            case GLOBAL_REPLY:
+                if (!sameGroup) {
+                    global.receive(fromNodeId, Message.Type.REPLY, timestamp);
+                } else if (fromNodeId == representative && currentState == NodeState.REQUESTING && asked) {
+                    enter(); // Our representative won for us; one since replaced no longer speaks for the group
+                }
+                break;
+            case RELEASE:
+                released(fromNodeId);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected " + type + " from Node-" + fromNodeId);
+        }
+    }
+
+    @Override
+    public void exit() {
+        host.record(EventLog.Event.EXITED, -1);
+        currentState = NodeState.IDLE;
+        // Global first, so the group's next winner finds the representative free
+        if (representative == nodeId) {
+            released(nodeId);
+        } else {
+            host.send(representative, Message.Type.RELEASE, 0);
+        }
+        local.exit();
+        if (takingOver) takenOver(); // We were the member inside
+        host.stateChanged();
+    }
+
+    private void holdBack(int fromNodeId, long timestamp) {
+        if (held == heldFrom.length) {
+            heldFrom = Arrays.copyOf(heldFrom, held * 2);
+            heldAt = Arrays.copyOf(heldAt, held * 2);
+        }
+        heldFrom[held] = fromNodeId;
+        heldAt[held++] = timestamp;
+    }
+
+    /** Our group holds no global permission we did not win ourselves; answer the requests held back. */
+    private void takenOver() {
+        takingOver = false;
+        if (representative != nodeId) return;
+        int count = held;
+        held = 0;
+        for (int i = 0; i < count; i++) {
+            global.receive(heldFrom[i], Message.Type.REQUEST, heldAt[i]);
+        }
+    }
+
+    @Override
+    public void clear(int removedNodeId) {
+        // New representative first: clearing the local level may let us win our group
+        boolean reask = removedNodeId == representative && asked;
+        int successor = successor(removedNodeId);
+        membersSource = null; // Lay out again on the next request
+        group = without(group, removedNodeId);
+        representatives = without(representatives, removedNodeId);
+        if (removedNodeId == representative) {
+            representative = nodeId;
+            for (int id : group) representative = Math.min(representative, id);
+            successor = representative;
+        }
+        if (successor == nodeId) takingOver = true;
+        int kept = 0;
+        for (int i = 0; i < held; i++) {
+            if (heldFrom[i] != removedNodeId) {
+                heldFrom[kept] = heldFrom[i];
+                heldAt[kept++] = heldAt[i];
+            }
+        }
+        held = kept;
+        if (successor != NONE) {
+            representatives = without(representatives, successor); // Once, however stale our layout
+            representatives = Arrays.copyOf(representatives, representatives.length + 1);
+            representatives[representatives.length - 1] = successor;
+        }
+
+        local.clear(removedNodeId);
+        // A global request in flight must now win the successor over too, or
+        // clearing the one it replaces would let us in behind its back
+        if (successor != NONE) global.include(successor);
+        global.clear(removedNodeId);
+        if (next == removedNodeId) next = NONE;
+        released(removedNodeId);
+        if (reask && currentState == NodeState.REQUESTING) {
+            wonGroup(); // Ask the new representative instead
+        }
+        if (takingOver && currentState == NodeState.IDLE) {
+            layOut(host.members());
+            local.request(group); // See whether a member is still inside
+        }
+    }
+
+    /** Who represents {@code removed}'s group once it is gone, if it represented one; else NONE. */
+    private int successor(int removed) {
+        int lowest = NONE;
+        for (int id : host.members()) {
+            if (id == removed || groupOf(id) != groupOf(removed)) continue;
+            if (id < removed) return NONE; // It was not the group's representative
+            if (lowest == NONE || id < lowest) lowest = id;
+        }
+        return lowest;
+    }
+
+    private static int[] without(int[] ids, int removed) {
+        int[] kept = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            if (id != removed) kept[count++] = id;
+        }
+        return count == ids.length ? ids : Arrays.copyOf(kept, count);
+    }
+}
@@ -0,0 +1,73 @@
+package com.app;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative node ids backed by a growable {@code long[]} bitset
+ * with a running count, so membership changes and {@link #isEmpty()} are
+ * constant time and nothing is boxed. Not thread-safe; it lives inside a
+ * thread-confined {@link RicartAgrawala}.
+ */
+public final class IdSet {
+    private long[] words;
+    private int count;
+
+    public IdSet() {
+        this(64);
+    }
+
+    public IdSet(int expectedMaxId) {
+        this.words = new long[Math.max(1, (expectedMaxId + 63) >>> 6)];
+    }
+
+    /** Returns true if {@code id} was not already present. */
+    public boolean add(int id) {
+        int index = id >>> 6;
+        if (index >= words.length) {
+            words = Arrays.copyOf(words, Math.max(index + 1, words.length * 2));
+        }
+        long bit = 1L << id;
+        if ((words[index] & bit) != 0) return false;
+        words[index] |= bit;
+        count++;
+        return true;
+    }
+
+    /** Returns true if {@code id} was present. */
+    public boolean remove(int id) {
+        int index = id >>> 6;
+        if (index >= words.length) return false;
+        long bit = 1L << id;
+        if ((words[index] & bit) == 0) return false;
+        words[index] &= ~bit;
+        count--;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        int index = id >>> 6;
+        return index < words.length && (words[index] & (1L << id)) != 0;
+    }
+
+    /** Smallest id {@code >= from} in the set, or -1. */
+    public int next(int from) {
+        int index = from >>> 6;
+        if (index >= words.length) return -1;
+        long word = words[index] & (-1L << from);
+        while (true) {
+            if (word != 0) return (index << 6) + Long.numberOfTrailingZeros(word);
+            if (++index == words.length) return -1;
+            word = words[index];
+        }
+    }
+
+    public int size() { return count; }
+
+    public boolean isEmpty() { return count == 0; }
+
+    public void clear() {
+        if (count == 0) return;
+        Arrays.fill(words, 0L);
+        count = 0;
+    }
+}
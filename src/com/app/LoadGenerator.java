@@ -0,0 +1,63 @@
+package com.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Drives live nodes without a UI under a {@link Workload} and checks the
+ * result. Starts {@code --nodes} nodes, offers requests as
+ * {@code --workload} and {@code --rate} say for {@code --duration}
+ * milliseconds, then prints the {@link Metrics} and what the
+ * {@link SafetyChecker} saw. Exits with status 1 if mutual exclusion was
+ * ever broken, so it can gate a build. {@code --time-scale} runs the
+ * configured think, hold and arrival times that many times faster:
+ * <pre>
+ * java -cp bin com.app.LoadGenerator --workload=poisson --rate=20 --nodes=50
+ * java -cp bin com.app.LoadGenerator --workload=bursty --time-scale=10 --exec=shared --nodes=500
+ * </pre>
+ * With {@code --transport=nio} this process runs its share of a
+ * multi-process cluster; start one per {@code --cluster} address, each with
+ * its own {@code --process} index. The checker then sees only this
+ * process's nodes.
+ * <p>
+ * {@code --crashes} stops that many random local nodes during the run, one
+ * every {@code --crash-every} milliseconds, without telling their peers;
+ * with {@code --heartbeat} set the survivors' failure detectors evict them:
+ * <pre>
+ * java -cp bin com.app.LoadGenerator --nodes=20 --crashes=3 --crash-every=5000 --heartbeat=100
+ * </pre>
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.parse(args);
+        if (!Options.given(args, "log-level") && options.feed == null) options.logLevel = EventLog.Level.OFF;
+        if (!Options.given(args, "duration")) options.durationMs = 30_000;
+        if (!Options.given(args, "workload")) options.workload = Workload.Profile.POISSON;
+        Node.configure(options);
+
+        List<Node> nodes = new ArrayList<>(options.nodes);
+        for (int i = 0; i < options.nodes; i++) {
+            nodes.add(Node.push(null));
+        }
+        nodes.forEach(Node::start);
+        long end = System.nanoTime() + options.durationMs * 1_000_000L;
+        List<Node> running = new ArrayList<>(nodes);
+        Random random = new Random(options.seed);
+        for (int i = 1; i <= options.crashes && i * options.crashEveryMs < options.durationMs; i++) {
+            Thread.sleep(options.crashEveryMs);
+            running.remove(random.nextInt(running.size())).crash();
+        }
+        Thread.sleep(Math.max(0, (end - System.nanoTime()) / 1_000_000L));
+        Node.scanForStarvation(); // The periodic scan may not have run at all in a short run
+        nodes.forEach(Node::shutdown);
+
+        SafetyChecker checker = Node.checker();
+        System.out.printf("workload=%s nodes=%d resources=%d mode=%s transport=%s timeScale=%s%n",
+            options.workload, options.nodes, options.resources, options.execution, options.transport, options.timeScale);
+        System.out.println(Metrics.global().snapshot());
+        System.out.println(checker);
+        System.exit(checker.violations() > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,299 @@
+package com.app;
+
+import java.util.PriorityQueue;
+
+import com.app.Node.NodeState;
+
+/**
+ * Maekawa's quorum-based mutual exclusion with Sanders' INQUIRE/YIELD
+ * deadlock avoidance. Members are laid out row by row on a square grid and a
+ * node's quorum is its row plus its column, so any two quorums share a node
+ * and an entry costs O(√N) messages instead of Ricart-Agrawala's O(N).
+ * <p>
+ * Every node is both a requester and a voter. As a voter it grants (REPLY)
+ * one request at a time and queues the rest in timestamp order; a queued
+ * request that outranks the current grant makes it INQUIRE whether the
+ * grantee can YIELD. A grantee yields only once some other voter has told it
+ * FAILED, i.e. when it could not have entered anyway.
+ * <p>
+ * Quorums are computed from the membership passed to {@link #request}, so
+ * nodes joining or leaving while requests are in flight can briefly see
+ * non-intersecting quorums. A node removed while we request takes its vote
+ * with it and shifts the grid, so we give the request up (releasing every
+ * vote and queued copy of it) and the host retries against the new
+ * membership. REPLY and RELEASE carry the request's timestamp, so votes and
+ * releases meant for a request given up never count for its retry.
+ */
+public class Maekawa implements MutualExclusion {
+    private static final int ID_BITS = 24;
+    private static final long NONE = -1;
+
+    private final int nodeId;
+    private final Host host;
+    private volatile NodeState currentState = NodeState.IDLE;
+    private long clock = 0;
+
+    // Requester side
+    private long requestTimestamp = -1;
+    private int[] quorum = new int[0];
+    private int[] quorumSource;
+    private final IdSet grants = new IdSet();
+    private final IdSet failedBy = new IdSet();
+    private final IdSet inquiredBy = new IdSet();
+
+    // Voter side: the request we granted and the ones waiting behind it,
+    // each packed as (timestamp << ID_BITS | nodeId) so they order by priority
+    private long granted = NONE;
+    private boolean inquired = false;
+    private final PriorityQueue<Long> waiting = new PriorityQueue<>();
+    private final IdSet toldFailed = new IdSet();
+
+    public Maekawa(int nodeId, Host host) {
+        this.nodeId = nodeId;
+        this.host = host;
+    }
+
+    @Override public NodeState getState() { return currentState; }
+    @Override public long getClock() { return clock; }
+
+    private static long pack(long timestamp, int id) { return (timestamp << ID_BITS) | id; }
+    private static int idOf(long packed) { return (int) (packed & ((1 << ID_BITS) - 1)); }
+    private static long timestampOf(long packed) { return packed >>> ID_BITS; }
+
+    @Override
+    public boolean request(int[] members) {
+        if (currentState != NodeState.IDLE) {
+            return false; // Already requesting or in CS
+        }
+        currentState = NodeState.REQUESTING;
+
+        requestTimestamp = ++clock;
+        if (members != quorumSource) {
+            quorum = quorumOf(members);
+            quorumSource = members;
+        }
+        grants.clear();
+        failedBy.clear();
+        inquiredBy.clear();
+
+        host.record(EventLog.Event.REQUESTED, -1);
+
+        for (int id : quorum) {
+            host.send(id, Message.Type.REQUEST, requestTimestamp);
+        }
+        host.stateChanged();
+        return true;
+    }
+
+    /** Our row and column of the member grid, including ourselves. */
+    private int[] quorumOf(int[] members) {
+        int position = -1;
+        for (int i = 0; i < members.length; i++) {
+            if (members[i] == nodeId) position = i;
+        }
+        if (position < 0) return new int[] { nodeId };
+
+        int columns = (int) Math.ceil(Math.sqrt(members.length));
+        int row = position / columns;
+        int column = position % columns;
+        IdSet result = new IdSet();
+        for (int i = row * columns; i < Math.min(members.length, (row + 1) * columns); i++) {
+            result.add(members[i]);
+        }
+        for (int i = column; i < members.length; i += columns) {
+            result.add(members[i]);
+        }
+
+        int[] ids = new int[result.size()];
+        int n = 0;
+        for (int id = result.next(0); id >= 0; id = result.next(id + 1)) {
+            ids[n++] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public void receive(int fromNodeId, Message.Type type, long timestamp) {
+        switch (type) {
+            case REQUEST:
+                clock = Math.max(clock + 1, timestamp);
+                handleRequest(pack(timestamp, fromNodeId));
+                break;
+            case REPLY:
+                handleGrant(fromNodeId, timestamp);
+                break;
+            case FAILED:
+                handleFailed(fromNodeId);
+                break;
+            case INQUIRE:
+                handleInquire(fromNodeId);
+                break;
+            case YIELD:
+                handleYield(fromNodeId);
+                break;
+            case RELEASE:
+                handleRelease(pack(timestamp, fromNodeId));
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected " + type + " from Node-" + fromNodeId);
+        }
+    }
+
+    // --- Voter side ---
+
+    private void handleRequest(long request) {
+        int from = idOf(request);
+        if (granted == NONE) {
+            grant(request);
+            return;
+        }
+        Long best = waiting.peek();
+        waiting.add(request);
+        if (request < granted && (best == null || request < best)) {
+            // Outranks everything we know of: ask the grantee to give it back
+            if (!inquired) {
+                inquired = true;
+                host.send(idOf(granted), Message.Type.INQUIRE, clock);
+            }
+        } else {
+            fail(from);
+        }
+    }
+
+    private void fail(int requesterId) {
+        toldFailed.add(requesterId);
+        host.send(requesterId, Message.Type.FAILED, clock);
+    }
+
+    private void grant(long request) {
+        granted = request;
+        inquired = false;
+        toldFailed.remove(idOf(request));
+        host.record(EventLog.Event.GRANTED, idOf(request));
+        host.send(idOf(request), Message.Type.REPLY, timestampOf(request));
+
+        // Everyone still waiting now ranks below the grant; make sure they know,
+        // or a waiter holding other votes would never yield them
+        for (long waiter : waiting) {
+            if (!toldFailed.contains(idOf(waiter))) fail(idOf(waiter));
+        }
+    }
+
+    private void handleYield(int fromNodeId) {
+        if (granted == NONE || idOf(granted) != fromNodeId) return;
+        toldFailed.add(fromNodeId); // It only yields after being told FAILED elsewhere
+        waiting.add(granted);
+        grant(waiting.poll());
+    }
+
+    /** The requester is done with {@code request}, whether it won our vote or still waits for it. */
+    private void handleRelease(long request) {
+        if (granted != request) {
+            // Withdrawn; a retry must be told FAILED afresh
+            if (waiting.remove(request)) toldFailed.remove(idOf(request));
+            return;
+        }
+        releaseGrant();
+    }
+
+    private void releaseGrant() {
+        granted = NONE;
+        inquired = false;
+        Long next = waiting.poll();
+        if (next != null) {
+            grant(next);
+        }
+    }
+
+    // --- Requester side ---
+
+    private void handleGrant(int fromNodeId, long timestamp) {
+        if (timestamp != requestTimestamp) return; // For a request we gave up, and released
+        if (currentState == NodeState.IDLE) {
+            // A vote we no longer need; hand it straight back
+            host.send(fromNodeId, Message.Type.RELEASE, timestamp);
+            return;
+        }
+        if (currentState != NodeState.REQUESTING) return;
+        grants.add(fromNodeId);
+        failedBy.remove(fromNodeId);
+
+        if (grants.size() == quorum.length) {
+            inquiredBy.clear();
+            currentState = NodeState.IN_CS;
+            host.record(EventLog.Event.ENTERED, -1);
+            host.stateChanged();
+            host.enterCriticalSection();
+        }
+    }
+
+    private void handleFailed(int fromNodeId) {
+        if (currentState != NodeState.REQUESTING) return;
+        failedBy.add(fromNodeId);
+        // We cannot win right now, so give back every vote someone asked about
+        for (int id = inquiredBy.next(0); id >= 0; id = inquiredBy.next(id + 1)) {
+            if (grants.contains(id)) yieldTo(id);
+        }
+        inquiredBy.clear();
+    }
+
+    private void handleInquire(int fromNodeId) {
+        if (currentState != NodeState.REQUESTING) return; // In CS: our RELEASE will answer it
+        // Links are FIFO, so an inquiry about a vote we do not hold is about
+        // one we have already yielded
+        if (!grants.contains(fromNodeId)) return;
+        if (!failedBy.isEmpty()) {
+            yieldTo(fromNodeId);
+        } else {
+            inquiredBy.add(fromNodeId);
+        }
+    }
+
+    private void yieldTo(int voterId) {
+        grants.remove(voterId);
+        inquiredBy.remove(voterId);
+        failedBy.add(voterId); // Its vote now goes to someone ahead of us
+        host.record(EventLog.Event.YIELDED, voterId);
+        host.send(voterId, Message.Type.YIELD, clock);
+    }
+
+    @Override
+    public void exit() {
+        host.record(EventLog.Event.EXITED, -1);
+        currentState = NodeState.IDLE;
+        for (int id : quorum) {
+            host.send(id, Message.Type.RELEASE, requestTimestamp);
+        }
+        grants.clear();
+        host.stateChanged();
+    }
+
+    @Override
+    public void clear(int removedNodeId) {
+        grants.remove(removedNodeId);
+        failedBy.remove(removedNodeId);
+        inquiredBy.remove(removedNodeId);
+        waiting.removeIf(request -> idOf(request) == removedNodeId);
+        toldFailed.remove(removedNodeId);
+        if (granted != NONE && idOf(granted) == removedNodeId) {
+            releaseGrant();
+        }
+        quorumSource = null;
+        if (currentState == NodeState.REQUESTING) {
+            giveUp(removedNodeId);
+        }
+    }
+
+    /** Withdraws our request everywhere; the host asks again. */
+    private void giveUp(int removedNodeId) {
+        host.record(EventLog.Event.GAVE_UP, removedNodeId);
+        currentState = NodeState.IDLE;
+        for (int id : quorum) {
+            if (id != removedNodeId) host.send(id, Message.Type.RELEASE, requestTimestamp);
+        }
+        grants.clear();
+        failedBy.clear();
+        inquiredBy.clear();
+        host.stateChanged();
+    }
+}
@@ -0,0 +1,135 @@
+package com.app;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer queue. Any thread may
+ * {@link #offer} without blocking; only the owning thread may poll or drain.
+ * Each slot carries a sequence number (Vyukov's bounded queue) so producers
+ * claim slots with a single CAS on the tail and the consumer never CASes.
+ * <p>
+ * A producer that finds the ring full can {@link #spill} into an unbounded
+ * overflow queue instead, so nobody ever has to wait for the consumer. While
+ * anything is spilled, {@link #offer} refuses too and later items queue
+ * behind it, so items from one producer stay in order; the consumer takes
+ * the ring first, and the overflow only once no slot is claimed, published
+ * or not.
+ */
+public final class Mailbox<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile Thread waiter;
+    private final ConcurrentLinkedQueue<T> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spilled = new AtomicInteger(); // Items in overflow; cheaper than its size()
+
+    public Mailbox(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Enqueues without blocking; returns false if the ring is full, or anything is spilled. */
+    public boolean offer(T item) {
+        if (spilled.get() > 0) return false;
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+        slots.lazySet(index, item);
+        sequences.set(index, position + 1);
+        wake();
+        return true;
+    }
+
+    /** Enqueues past capacity, for a producer that {@link #offer} turned away and must not wait. */
+    public void spill(T item) {
+        spilled.incrementAndGet();
+        overflow.add(item);
+        wake();
+    }
+
+    private void wake() {
+        Thread consumer = waiter;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    /** Consumer only: next item, or null if empty. */
+    public T poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            // A slot claimed but not yet published may hold an item its producer
+            // sent before spilling; the overflow only follows a truly empty ring
+            if (tail.get() != position) return null;
+            T item = overflow.poll();
+            if (item != null) spilled.decrementAndGet();
+            return item;
+        }
+        T item = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+        return item;
+    }
+
+    /** Consumer only: waits up to {@code timeoutNanos} for the next item. */
+    public T poll(long timeoutNanos) throws InterruptedException {
+        T item = poll();
+        if (item != null || timeoutNanos <= 0) return item;
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        waiter = Thread.currentThread();
+        try {
+            while ((item = poll()) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return item;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /** Consumer only: hands up to {@code limit} queued items to {@code sink}. */
+    public int drain(Consumer<? super T> sink, int limit) {
+        int drained = 0;
+        T item;
+        while (drained < limit && (item = poll()) != null) {
+            sink.accept(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    /** Approximate number of queued items, spilled ones included. */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head) + spilled.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
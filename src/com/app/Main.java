@@ -1,68 +1,125 @@
-package com.app;
-
-import javax.swing.*;
-import java.awt.*;
- 
-public class Main extends JFrame {
-    private static final long serialVersionUID = 1L;
-    private Graph graph = new Graph();
-
-    public Main() {
-        super("Ricart-Agrawala Algorithm Visualizer");
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
-        setLayout(new BorderLayout());
-
-        // Control panel
-        JPanel controlPanel = new JPanel();
-        JButton addNodeBtn = new JButton("Add Node");
-        JButton removeNodeBtn = new JButton("Remove Node");
-
-        addNodeBtn.addActionListener(graph::addNode);
-        removeNodeBtn.addActionListener(graph::removeNode);
-
-        controlPanel.add(addNodeBtn);
-        controlPanel.add(removeNodeBtn);
-
-        // Info panel
-        JPanel infoPanel = new JPanel();
-        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-        infoPanel.setBorder(BorderFactory.createTitledBorder("Algorithm Info"));
-        
-        JLabel info1 = new JLabel("Ricart-Agrawala Mutual Exclusion Algorithm");
-        JLabel info2 = new JLabel("• Green: IDLE state");
-        JLabel info3 = new JLabel("• Orange: REQUESTING Critical Section");
-        JLabel info4 = new JLabel("• Red: IN Critical Section");
-        JLabel info5 = new JLabel("• Blue arrows: REQUEST messages");
-        JLabel info6 = new JLabel("• Green arrows: REPLY messages");
-        JLabel info7 = new JLabel("Check console for detailed logs");
-        
-        info1.setFont(info1.getFont().deriveFont(Font.BOLD));
-        
-        infoPanel.add(info1);
-        infoPanel.add(Box.createVerticalStrut(10));
-        infoPanel.add(info2);
-        infoPanel.add(info3);
-        infoPanel.add(info4);
-        infoPanel.add(Box.createVerticalStrut(5));
-        infoPanel.add(info5);
-        infoPanel.add(info6);
-        infoPanel.add(Box.createVerticalStrut(5));
-        infoPanel.add(info7);
-
-        // Layout
-        add(graph, BorderLayout.CENTER);
-        add(controlPanel, BorderLayout.SOUTH);
-        add(infoPanel, BorderLayout.EAST);
-
-        pack();
-        setLocationRelativeTo(null);
-        setVisible(true);
-        
-        System.out.println("=== Ricart-Agrawala Algorithm Visualizer Started ===");
-        System.out.println("Add nodes to see the mutual exclusion algorithm in action!");
-    }
-
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(Main::new);
-    }
+package com.app;
+
+import javax.swing.*;
+import java.awt.*;
+ 
+public class Main extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private final Graph graph;
+
+    public Main(Options options) {
+        super("Ricart-Agrawala Algorithm Visualizer");
+        graph = new Graph(options.fps);
+        graph.setGroupSize(options.groupSize);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        // Control panel
+        JPanel controlPanel = new JPanel();
+        JButton addNodeBtn = new JButton("Add Node");
+        JButton addTenBtn = new JButton("Add 10");
+        JButton addHundredBtn = new JButton("Add 100");
+        JButton removeNodeBtn = new JButton("Remove Node");
+        JButton fitBtn = new JButton("Fit");
+
+        addNodeBtn.addActionListener(graph::addNode);
+        addTenBtn.addActionListener(e -> graph.addNodes(10));
+        addHundredBtn.addActionListener(e -> graph.addNodes(100));
+        removeNodeBtn.addActionListener(graph::removeNode);
+        fitBtn.addActionListener(e -> graph.fitView());
+
+        controlPanel.add(addNodeBtn);
+        controlPanel.add(addTenBtn);
+        controlPanel.add(addHundredBtn);
+        controlPanel.add(removeNodeBtn);
+        controlPanel.add(fitBtn);
+
+        Replay replay = null;
+        if (options.replayFile != null) {
+            setTitle(getTitle() + " - " + options.replayFile);
+            replay = new Replay(options.replayFile, graph);
+            controlPanel = replay.controls();
+        }
+        EventFeed feed = null;
+        if (options.observePort > 0) {
+            setTitle(getTitle() + " - observing port " + options.observePort);
+            feed = new EventFeed(options.observePort, graph);
+            controlPanel = feed.controls();
+        }
+        int resources = replay != null ? replay.resources() : options.resources;
+        if (resources > 1) {
+            controlPanel.add(graph.resourceSelector(resources));
+        }
+
+        // Info panel
+        JPanel infoPanel = new JPanel();
+        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+        infoPanel.setBorder(BorderFactory.createTitledBorder("Algorithm Info"));
+        
+        JLabel info1 = new JLabel("Ricart-Agrawala Mutual Exclusion Algorithm");
+        JLabel info2 = new JLabel("• Green: IDLE state");
+        JLabel info3 = new JLabel("• Orange: REQUESTING Critical Section");
+        JLabel info4 = new JLabel("• Red: IN Critical Section");
+        JLabel info5 = new JLabel("• Blue arrows: REQUEST messages");
+        JLabel info6 = new JLabel("• Green arrows: REPLY messages");
+        JLabel info8 = new JLabel("• Purple arrows: quorum and inter-group control messages");
+        JLabel info7 = new JLabel("Check console for detailed logs");
+        
+        info1.setFont(info1.getFont().deriveFont(Font.BOLD));
+        
+        infoPanel.add(info1);
+        infoPanel.add(Box.createVerticalStrut(10));
+        infoPanel.add(info2);
+        infoPanel.add(info3);
+        infoPanel.add(info4);
+        infoPanel.add(Box.createVerticalStrut(5));
+        infoPanel.add(info5);
+        infoPanel.add(info6);
+        infoPanel.add(info8);
+        infoPanel.add(Box.createVerticalStrut(5));
+        infoPanel.add(info7);
+
+        // Layout
+        add(graph, BorderLayout.CENTER);
+        add(controlPanel, BorderLayout.SOUTH);
+        JPanel sidePanel = new JPanel(new BorderLayout());
+        sidePanel.add(infoPanel, BorderLayout.NORTH);
+        if (replay == null && feed == null) {
+            sidePanel.add(new MetricsPanel(Metrics.global()), BorderLayout.CENTER);
+        }
+        add(sidePanel, BorderLayout.EAST);
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+        
+        System.out.println("=== Ricart-Agrawala Algorithm Visualizer Started ===");
+        if (replay != null) {
+            replay.setPlaying(true);
+        } else if (feed != null) {
+            System.out.println("Waiting for nodes started with --feed=HOST:" + options.observePort);
+        } else {
+            System.out.println("Add nodes to see the mutual exclusion algorithm in action!");
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = Options.parse(args);
+        if (options.headless) {
+            System.out.println("=== Headless simulation (" + options.engine + ") ===");
+            Simulation.Report report = new Simulation(options).run();
+            System.out.println(report);
+            if (report.checker.violations() > 0) System.exit(1);
+            return;
+        }
+        boolean replicasOnly = options.replayFile != null || options.observePort > 0;
+        if (replicasOnly) {
+            options.logLevel = EventLog.Level.OFF; // Replicas would only re-log the trace
+        }
+        Node.configure(options);
+        if (options.metricsFile != null && !replicasOnly) {
+            Metrics.global().exportEvery(options.metricsFile, options.metricsIntervalMs);
+        }
+        SwingUtilities.invokeLater(() -> new Main(options));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.app;
+
+import java.util.function.Supplier;
+
+/** Every node in one JVM: a send is a mailbox offer on the receiver. */
+public final class MemoryTransport implements Transport {
+    private final Receiver local;
+    private final Supplier<int[]> members;
+
+    public MemoryTransport(Receiver local, Supplier<int[]> members) {
+        this.local = local;
+        this.members = members;
+    }
+
+    @Override public void start() { }
+
+    @Override
+    public boolean send(int toNodeId, Message message) {
+        return local.deliver(toNodeId, message);
+    }
+
+    @Override
+    public int[] members() {
+        return members.get();
+    }
+
+    @Override public void close() { }
+}
@@ -0,0 +1,70 @@
+package com.app;
+
+/**
+ * An entry in a node's {@link Mailbox}. REQUEST, READ_REQUEST and REPLY travel
+ * between nodes, as do RELEASE, FAILED, INQUIRE and YIELD for quorum engines,
+ * GLOBAL_REQUEST and GLOBAL_REPLY for the {@link Hierarchical} engine's upper
+ * level, HEARTBEAT and EVICT for the {@link FailureDetector}, and ENVELOPE
+ * carries several of those at once when batching is on; EXIT, LEAVE, TICK,
+ * FLUSH and RETRY are local control messages so that every protocol state
+ * change happens on the owning node's thread. A HEARTBEAT from a node to
+ * itself is its detector's timer.
+ * <p>
+ * Protocol messages, EXIT and RETRY concern one resource (one of
+ * {@code --resources} independent critical sections); an ENVELOPE's parts
+ * carry their own.
+ */
+public final class Message {
+    public enum Type {
+        REQUEST, REPLY, RELEASE, FAILED, INQUIRE, YIELD,
+        ENVELOPE, EXIT, LEAVE, TICK, FLUSH, RETRY,
+        // Appended so ordinals in existing traces keep their meaning
+        READ_REQUEST, // Shared-mode REQUEST
+        GLOBAL_REQUEST, GLOBAL_REPLY,
+        HEARTBEAT, EVICT; // EVICT carries the evicted id as its timestamp
+
+        /** True for messages a {@link MutualExclusion} engine handles. */
+        public boolean isProtocol() {
+            return ordinal() <= YIELD.ordinal() || (ordinal() >= READ_REQUEST.ordinal() && ordinal() <= GLOBAL_REPLY.ordinal());
+        }
+    }
+
+    public final Type type;
+    public final int from;
+    public final long timestamp;
+    public final int resource;
+    /** Packed {@link Batcher} parts of an ENVELOPE; null otherwise. */
+    public final long[] parts;
+
+    private Message(Type type, int from, long timestamp) {
+        this(type, from, timestamp, 0, null);
+    }
+
+    private Message(Type type, int from, long timestamp, int resource, long[] parts) {
+        this.type = type;
+        this.from = from;
+        this.timestamp = timestamp;
+        this.resource = resource;
+        this.parts = parts;
+    }
+
+    public static Message of(Type type, int from, long timestamp) { return new Message(type, from, timestamp); }
+    public static Message of(Type type, int from, long timestamp, int resource) { return new Message(type, from, timestamp, resource, null); }
+    public static Message exit(int self, int resource) { return new Message(Type.EXIT, self, 0, resource, null); }
+    /** {@code removed} has left the cluster; delivered to {@code removed} itself, it stops as a crashed node would. */
+    public static Message leave(int removed) { return new Message(Type.LEAVE, removed, 0); }
+    /** Time for {@code self} to decide whether to request (SHARED execution mode). */
+    public static Message tick(int self) { return new Message(Type.TICK, self, 0); }
+    public static Message envelope(int from, long[] parts) { return new Message(Type.ENVELOPE, from, 0, 0, parts); }
+    /** Time for {@code self} to send what its {@link Batcher} holds. */
+    public static Message flush(int self) { return new Message(Type.FLUSH, self, 0); }
+    /** {@code self} gave up a request for {@code resource} it still owes its workload; try again. */
+    public static Message retry(int self, int resource) { return new Message(Type.RETRY, self, 0, resource, null); }
+
+    @Override
+    public String toString() {
+        if (type == Type.ENVELOPE) return "ENVELOPE of " + parts.length + " from Node-" + from;
+        return type + " from Node-" + from + (resource != 0 ? " for resource " + resource : "")
+            + (type == Type.REQUEST || type == Type.READ_REQUEST || type == Type.GLOBAL_REQUEST ? " (timestamp: " + timestamp + ")" : "");
+    }
+}
@@ -0,0 +1,172 @@
+package com.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Protocol metrics: striped counters ({@link LongAdder}, one cell per
+ * contending thread) and {@link Histogram}s that nodes update on their own
+ * threads without locks. Readers take a {@link Snapshot}, which the
+ * visualizer shows in a {@link MetricsPanel}, the simulator prints in its
+ * report, and {@link #exportEvery} appends to a CSV file.
+ * <p>
+ * Latencies are recorded in nanoseconds, of wall time for live nodes and of
+ * virtual time in {@link Simulation}. With {@code --group-size} set, messages
+ * between nodes of different groups are also counted as INTER_GROUP.
+ * EVICTIONS counts peers suspected by a {@link FailureDetector}, once each
+ * by the node that suspected it; its HEARTBEATS are counted apart from
+ * MESSAGES, which stay the protocol's own.
+ */
+public final class Metrics {
+    public enum Counter { REQUESTS, ENTRIES, DEFERRALS, GIVE_UPS, MESSAGES, ENVELOPES, VIOLATIONS, STARVED, INTER_GROUP, CRASHES, EVICTIONS, HEARTBEATS }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final LongAdder[] counters = new LongAdder[COUNTERS.length];
+    private final Histogram entryLatency = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+    private final long origin = System.nanoTime();
+
+    public Metrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /** The metrics live nodes record into. */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public void count(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    /** One critical section entered, {@code latencyNanos} after it was requested. */
+    public void entered(long latencyNanos) {
+        counters[Counter.ENTRIES.ordinal()].increment();
+        entryLatency.record(latencyNanos);
+    }
+
+    /** Mailbox depth seen by a delivery. */
+    public void queued(int depth) {
+        queueDepth.record(depth);
+    }
+
+    public Snapshot snapshot() {
+        return snapshot(System.nanoTime() - origin);
+    }
+
+    /** A snapshot stamped with {@code elapsedNanos}, for callers that keep their own (virtual) clock. */
+    public Snapshot snapshot(long elapsedNanos) {
+        long[] values = new long[counters.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters[i].sum();
+        }
+        return new Snapshot(elapsedNanos, values, entryLatency.snapshot(), queueDepth.snapshot());
+    }
+
+    /** Appends a CSV row to {@code file} every {@code periodMs}, starting with a header. */
+    public void exportEvery(String file, long periodMs) {
+        Writer out;
+        try {
+            out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+            out.write(Snapshot.CSV_HEADER);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open metrics file " + file, e);
+        }
+        ExecutionMode.pool().scheduleAtFixedRate(() -> {
+            try {
+                out.write(snapshot().toCsv());
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Cancels further exports
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Counter values and histograms at one moment. */
+    public static final class Snapshot {
+        static final String CSV_HEADER = "seconds,requests,entries,deferrals,give_ups,messages,envelopes,"
+            + "messages_per_entry,latency_mean_ms,latency_p50_ms,latency_p90_ms,latency_p99_ms,latency_p999_ms,"
+            + "latency_max_ms,queue_p99,queue_max,violations,starved,inter_group_messages,crashes,evictions,heartbeats";
+
+        public final long elapsedNanos;
+        private final long[] counters;
+        public final Histogram.Snapshot latency;
+        public final Histogram.Snapshot queue;
+
+        private Snapshot(long elapsedNanos, long[] counters, Histogram.Snapshot latency, Histogram.Snapshot queue) {
+            this.elapsedNanos = elapsedNanos;
+            this.counters = counters;
+            this.latency = latency;
+            this.queue = queue;
+        }
+
+        public long get(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        public double messagesPerEntry() {
+            long entries = get(Counter.ENTRIES);
+            return entries == 0 ? 0.0 : (double) get(Counter.MESSAGES) / entries;
+        }
+
+        /** Requests neither granted nor given up yet. */
+        public long waiting() {
+            return Math.max(0, get(Counter.REQUESTS) - get(Counter.ENTRIES) - get(Counter.GIVE_UPS));
+        }
+
+        /** Latency at quantile {@code q}, in milliseconds. */
+        public double latencyMs(double q) {
+            return latency.percentile(q) / 1e6;
+        }
+
+        public String toCsv() {
+            return String.format(Locale.ROOT, "%.3f,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%d,%d",
+                elapsedNanos / 1e9, get(Counter.REQUESTS), get(Counter.ENTRIES), get(Counter.DEFERRALS),
+                get(Counter.GIVE_UPS), get(Counter.MESSAGES), get(Counter.ENVELOPES), messagesPerEntry(),
+                latency.mean() / 1e6, latencyMs(0.5), latencyMs(0.9), latencyMs(0.99), latencyMs(0.999),
+                latency.max / 1e6, queue.percentile(0.99), queue.max, get(Counter.VIOLATIONS), get(Counter.STARVED),
+                get(Counter.INTER_GROUP), get(Counter.CRASHES), get(Counter.EVICTIONS), get(Counter.HEARTBEATS));
+        }
+
+        /** Messages between nodes of the same group; all of them when ungrouped. */
+        public long intraGroup() {
+            return get(Counter.MESSAGES) - get(Counter.INTER_GROUP);
+        }
+
+        @Override
+        public String toString() {
+            String groups = get(Counter.INTER_GROUP) == 0 ? "" : String.format(
+                "Messages: %d within groups, %d between groups%n", intraGroup(), get(Counter.INTER_GROUP));
+            String failures = get(Counter.CRASHES) + get(Counter.HEARTBEATS) == 0 ? "" : String.format(
+                "Failures: %d nodes crashed, %d evicted (%d heartbeats)%n",
+                get(Counter.CRASHES), get(Counter.EVICTIONS), get(Counter.HEARTBEATS));
+            return String.format(
+                "Requests: %d (%d deferrals, %d given up)%n" +
+                "Entries: %d (%.2f messages each)%n" +
+                "%s%s" +
+                "Entry latency: %.1f ms mean, p50 %.1f / p90 %.1f / p99 %.1f / p99.9 %.1f / max %.1f ms",
+                get(Counter.REQUESTS), get(Counter.DEFERRALS), get(Counter.GIVE_UPS),
+                get(Counter.ENTRIES), messagesPerEntry(), groups, failures,
+                latency.mean() / 1e6, latencyMs(0.5), latencyMs(0.9), latencyMs(0.99), latencyMs(0.999),
+                latency.max / 1e6);
+        }
+    }
+}
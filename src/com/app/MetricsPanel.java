@@ -0,0 +1,50 @@
+package com.app;
+
+import java.awt.Font;
+
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/** Live view of a {@link Metrics} registry, refreshed from a snapshot twice a second. */
+public class MetricsPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_MS = 500;
+
+    private final transient Metrics metrics;
+    private final JLabel entries = new JLabel();
+    private final JLabel messages = new JLabel();
+    private final JLabel waiting = new JLabel();
+    private final JLabel deferrals = new JLabel();
+    private final JLabel latencyMean = new JLabel();
+    private final JLabel latencyTail = new JLabel();
+    private final JLabel queue = new JLabel();
+    private final JLabel safety = new JLabel();
+
+    public MetricsPanel(Metrics metrics) {
+        this.metrics = metrics;
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        setBorder(BorderFactory.createTitledBorder("Metrics"));
+        for (JLabel label : new JLabel[] { entries, messages, waiting, deferrals, latencyMean, latencyTail, queue, safety }) {
+            label.setFont(label.getFont().deriveFont(Font.PLAIN));
+            add(label);
+        }
+        refresh();
+        new Timer(REFRESH_MS, e -> refresh()).start();
+    }
+
+    private void refresh() {
+        Metrics.Snapshot s = metrics.snapshot();
+        entries.setText("CS entries: " + s.get(Metrics.Counter.ENTRIES));
+        messages.setText(String.format("Messages: %d (%.1f per entry)", s.get(Metrics.Counter.MESSAGES), s.messagesPerEntry())
+            + (s.get(Metrics.Counter.INTER_GROUP) == 0 ? "" : ", " + s.get(Metrics.Counter.INTER_GROUP) + " between groups"));
+        waiting.setText("Waiting requests: " + s.waiting());
+        deferrals.setText("Deferrals: " + s.get(Metrics.Counter.DEFERRALS) + ", give-ups: " + s.get(Metrics.Counter.GIVE_UPS));
+        latencyMean.setText(String.format("Entry latency: %.0f ms mean", s.latency.mean() / 1e6));
+        latencyTail.setText(String.format("p50 %.0f / p99 %.0f / max %.0f ms", s.latencyMs(0.5), s.latencyMs(0.99), s.latency.max / 1e6));
+        queue.setText("Mailbox depth: p99 " + s.queue.percentile(0.99) + ", max " + s.queue.max);
+        safety.setText("Violations: " + s.get(Metrics.Counter.VIOLATIONS) + ", starved: " + s.get(Metrics.Counter.STARVED));
+    }
+}
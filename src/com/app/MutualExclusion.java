@@ -0,0 +1,82 @@
+package com.app;
+
+import com.app.Node.NodeState;
+
+/**
+ * A distributed mutual-exclusion protocol running on one node. {@link Node}
+ * and {@link Simulation} only drive this interface, so engines can be swapped
+ * at start-up with {@code --engine}.
+ * <p>
+ * Implementations are not thread-safe: every call for one node must come
+ * from a single thread. Only {@link #getState()} may be read from elsewhere.
+ */
+public interface MutualExclusion {
+
+    /** Callbacks through which a protocol reaches the rest of the system. */
+    interface Host {
+        void send(int toNodeId, Message.Type type, long timestamp);
+        /** Called on entry; the host must eventually call {@link MutualExclusion#exit()}. */
+        void enterCriticalSection();
+        void stateChanged();
+        /** Notes a protocol event concerning {@code peer} (or -1) in the event log. */
+        void record(EventLog.Event event, int peer);
+        /** Current membership, as {@link MutualExclusion#request} gets it; for engines that act on others' requests. */
+        int[] members();
+    }
+
+    enum Engine {
+        RICART_AGRAWALA, MAEKAWA, HIERARCHICAL;
+
+        public static Engine parse(String value) {
+            return valueOf(value.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    static MutualExclusion create(Options options, int nodeId, Host host) {
+        switch (options.engine) {
+            case MAEKAWA:
+                return new Maekawa(nodeId, host);
+            case HIERARCHICAL:
+                return new Hierarchical(nodeId, host, options.groupSize);
+            default:
+                return new RicartAgrawala(nodeId, host, options.roucairolCarvalho, options.keepRequests);
+        }
+    }
+
+    NodeState getState();
+
+    long getClock();
+
+    /**
+     * Starts a request against the given membership ({@code members} may
+     * include our own id). Returns false if we were not idle.
+     */
+    boolean request(int[] members);
+
+    /**
+     * As {@link #request(int[])}, in shared (read) mode if {@code shared}:
+     * shared holders do not exclude each other, only an exclusive one. Engines
+     * without a shared mode take every request exclusively.
+     */
+    default boolean request(int[] members, boolean shared) {
+        return request(members);
+    }
+
+    /**
+     * Asks again for a request this node gave up. Engines that order requests
+     * by timestamp keep the original one, so the retry does not lose its place,
+     * and its mode.
+     */
+    default boolean retry(int[] members) {
+        return request(members);
+    }
+
+    /** Handles a protocol message from another node. */
+    void receive(int fromNodeId, Message.Type type, long timestamp);
+
+    /** Leaves the critical section. */
+    void exit();
+
+    /** Forgets a node that has left the cluster. */
+    void clear(int removedNodeId);
+}
@@ -0,0 +1,361 @@
+package com.app;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A fixed cluster split across processes. Process {@code K} of the
+ * {@code --cluster} list hosts node ids {@code K * nodes} up to
+ * {@code (K + 1) * nodes - 1}; messages between its own nodes skip the
+ * network, and messages for other processes go out as {@link WireFormat}
+ * frames.
+ * <p>
+ * One non-blocking I/O thread serves every socket. Each remote process gets
+ * one outbound connection, dialled on first use and redialled until the peer
+ * is listening. Senders encode frames straight into that peer's pooled
+ * direct buffer under its lock and wake the I/O thread only when nothing was
+ * pending, so everything sent while a write is in progress leaves in the next
+ * gathering write. Frames carry a per-connection sequence number; a gap
+ * closes the connection rather than deliver out of order.
+ * <p>
+ * Inbound frames are decoded on the I/O thread and handed straight to the
+ * {@link Transport.Receiver}. That never blocks: a node whose mailbox is full
+ * spills the message into its overflow queue, so one slow node cannot stall
+ * reads and writes for every other connection.
+ */
+public final class NioTransport implements Transport {
+    private static final long RECONNECT_MS = 100;
+    private static final BufferPool POOL = BufferPool.shared();
+
+    /** The outbound connection to one process. */
+    private static final class Peer {
+        final InetSocketAddress address;
+        ByteBuffer filling = POOL.acquire();                       // Guarded by this
+        final ArrayDeque<ByteBuffer> full = new ArrayDeque<>();    // Guarded by this; flipped, oldest first
+        int sequence;                                              // Guarded by this; of the next frame
+        boolean queued;                                            // Guarded by this; the I/O thread owes us a flush
+        final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>(); // I/O thread only
+        ByteBuffer[] gather = new ByteBuffer[4];                   // I/O thread only
+        SocketChannel channel;                                     // I/O thread only
+        SelectionKey key;                                          // I/O thread only
+        long reconnectAt;                                          // I/O thread only
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    /** An inbound connection: its read buffer and the sequence number of the next frame. */
+    private static final class Inbound {
+        final ByteBuffer buffer = POOL.acquire();
+        int sequence;
+    }
+
+    private final Receiver local;
+    private final List<InetSocketAddress> cluster;
+    private final int process;
+    private final int nodesPerProcess;
+    private final int[] members;
+    private final Peer[] peers; // Null at our own index
+    private final Queue<Peer> ready = new ConcurrentLinkedQueue<>();
+    private final Selector selector;
+    private ServerSocketChannel server;
+    private Thread io;
+    private volatile boolean running;
+
+    public NioTransport(Options options, Receiver local) {
+        this.local = local;
+        this.cluster = options.cluster;
+        this.process = options.process;
+        this.nodesPerProcess = options.nodes;
+        this.members = new int[cluster.size() * nodesPerProcess];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = i;
+        }
+        this.peers = new Peer[cluster.size()];
+        for (int i = 0; i < peers.length; i++) {
+            if (i != process) peers[i] = new Peer(cluster.get(i));
+        }
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (io != null) return;
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(cluster.get(process));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen on " + cluster.get(process), e);
+        }
+        running = true;
+        io = new Thread(this::loop, "Transport-IO");
+        io.setDaemon(true);
+        io.start();
+    }
+
+    @Override
+    public boolean send(int toNodeId, Message message) {
+        if (toNodeId < 0 || toNodeId >= members.length) return false;
+        int owner = toNodeId / nodesPerProcess;
+        if (owner == process) return local.deliver(toNodeId, message);
+
+        Peer peer = peers[owner];
+        boolean wake;
+        synchronized (peer) {
+            if (!WireFormat.encode(peer.filling, toNodeId, message, peer.sequence)) {
+                peer.filling.flip();
+                peer.full.add(peer.filling);
+                peer.filling = POOL.acquire();
+                WireFormat.encode(peer.filling, toNodeId, message, peer.sequence); // Any frame fits an empty buffer
+            }
+            peer.sequence++;
+            wake = !peer.queued;
+            peer.queued = true;
+        }
+        if (wake) {
+            ready.add(peer);
+            selector.wakeup();
+        }
+        return true;
+    }
+
+    @Override
+    public int[] members() {
+        return members;
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = io;
+            running = false;
+        }
+        if (thread == null) {
+            closeAll();
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                selector.select(RECONNECT_MS);
+                for (Peer peer; (peer = ready.poll()) != null; ) {
+                    flush(peer);
+                }
+                long now = System.currentTimeMillis();
+                for (Peer peer : peers) {
+                    if (peer != null && peer.channel == null && peer.reconnectAt != 0 && peer.reconnectAt <= now) {
+                        flush(peer);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.attachment() instanceof Peer) {
+                        Peer peer = (Peer) key.attachment();
+                        if (key.isConnectable()) finishConnect(peer);
+                        else if (key.isWritable()) flush(peer);
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Transport I/O thread failed: " + e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Inbound());
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Inbound inbound = (Inbound) key.attachment();
+        try {
+            if (channel.read(inbound.buffer) < 0) {
+                close(key); // The peer process has gone; a partial frame dies with it
+                return;
+            }
+            inbound.sequence = WireFormat.decode(inbound.buffer, inbound.sequence, local);
+        } catch (StreamCorruptedException e) {
+            System.err.println("Dropping connection from " + channel.socket().getRemoteSocketAddress() + ": " + e.getMessage());
+            close(key);
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    /** Writes what {@code peer} has pending, dialling first if there is no connection. */
+    private void flush(Peer peer) {
+        if (peer.channel == null) {
+            connect(peer);
+            return;
+        }
+        if (!peer.channel.isConnected()) return; // finishConnect flushes
+        try {
+            while (true) {
+                synchronized (peer) {
+                    peer.writing.addAll(peer.full);
+                    peer.full.clear();
+                    if (peer.filling.position() > 0) {
+                        peer.filling.flip();
+                        peer.writing.add(peer.filling);
+                        peer.filling = POOL.acquire();
+                    }
+                    if (peer.writing.isEmpty()) {
+                        peer.queued = false;
+                        break;
+                    }
+                }
+                if (!write(peer)) {
+                    peer.key.interestOps(SelectionKey.OP_WRITE); // Socket full; finish when it drains
+                    return;
+                }
+            }
+            peer.key.interestOps(0);
+        } catch (IOException e) {
+            // The peer went away mid-stream; what it had not read is lost with it
+            disconnect(peer);
+            drop(peer);
+        }
+    }
+
+    /** One gathering write of everything in {@code peer.writing}; true if all of it went. */
+    private static boolean write(Peer peer) throws IOException {
+        if (peer.gather.length < peer.writing.size()) {
+            peer.gather = new ByteBuffer[Math.max(peer.writing.size(), peer.gather.length * 2)];
+        }
+        ByteBuffer[] buffers = peer.writing.toArray(peer.gather);
+        int count = peer.writing.size();
+        peer.channel.write(buffers, 0, count);
+        while (!peer.writing.isEmpty() && !peer.writing.peek().hasRemaining()) {
+            POOL.release(peer.writing.poll());
+        }
+        Arrays.fill(buffers, 0, count, null);
+        return peer.writing.isEmpty();
+    }
+
+    /** Forgets everything queued for {@code peer}; the next connection starts again from frame 0. */
+    private static void drop(Peer peer) {
+        while (!peer.writing.isEmpty()) {
+            POOL.release(peer.writing.poll());
+        }
+        synchronized (peer) {
+            while (!peer.full.isEmpty()) {
+                POOL.release(peer.full.poll());
+            }
+            peer.filling.clear();
+            peer.sequence = 0;
+            peer.queued = false;
+        }
+    }
+
+    private void connect(Peer peer) {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Batching is ours to do
+            peer.channel = channel;
+            peer.reconnectAt = 0;
+            if (channel.connect(peer.address)) {
+                peer.key = channel.register(selector, 0, peer);
+                flush(peer);
+            } else {
+                peer.key = channel.register(selector, SelectionKey.OP_CONNECT, peer);
+            }
+        } catch (IOException e) {
+            retryLater(peer);
+        }
+    }
+
+    private void finishConnect(Peer peer) {
+        try {
+            peer.channel.finishConnect();
+            peer.key.interestOps(0);
+            flush(peer);
+        } catch (IOException e) {
+            retryLater(peer); // Not listening yet; keep what is pending and dial again
+        }
+    }
+
+    private void retryLater(Peer peer) {
+        disconnect(peer);
+        peer.reconnectAt = System.currentTimeMillis() + RECONNECT_MS;
+    }
+
+    private void disconnect(Peer peer) {
+        if (peer.key != null) peer.key.cancel();
+        if (peer.channel != null) {
+            try {
+                peer.channel.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+        }
+        peer.channel = null;
+        peer.key = null;
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof Inbound) {
+            POOL.release(((Inbound) key.attachment()).buffer);
+        }
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already broken
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Shutting down anyway
+        }
+    }
+}
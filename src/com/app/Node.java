@@ -1,275 +1,679 @@
-package com.app;
-
-import java.awt.*;
-import java.util.*;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-
-import javax.swing.SwingUtilities;
-
-public class Node extends Thread {
-    public enum NodeState {
-        IDLE(new Color(46, 204, 113)),           // Modern green
-        REQUESTING(new Color(241, 196, 15)),     // Modern yellow/orange  
-        IN_CS(new Color(231, 76, 60));           // Modern red
-        
-        private final Color color;
-        NodeState(Color color) { this.color = color; }
-        public Color getColor() { return color; }
-    }
-
-    private static final AtomicInteger uidCounter = new AtomicInteger(0);
-    private static final List<Node> all_nodes = Collections.synchronizedList(new ArrayList<>());
-    private static volatile Graph graph = null;
-
-    private final int nodeId;
-    private final Point position;
-    private final AtomicReference<NodeState> currentState = new AtomicReference<>(NodeState.IDLE);
-    private final AtomicLong clock = new AtomicLong(0);
-    private final AtomicLong requestTimestamp = new AtomicLong(-1);
-
-    // Thread-safe collections for Ricart-Agrawala
-    private final Set<Integer> pendingReplies = ConcurrentHashMap.newKeySet();
-    private final Queue<Integer> deferredReplies = new ConcurrentLinkedQueue<>();
-
-    private Node() {
-        super("Node-" + uidCounter.get());
-        this.nodeId = uidCounter.getAndIncrement();
-        this.position = generateNonOverlappingPosition();
-        log("Node created with ID: " + nodeId);
-    }
-
-    private void log(String message) {
-        System.out.println(String.format("[Node-%d] %s (State: %s, Clock: %d)", 
-            nodeId, message, currentState.get(), clock.get()));
-    }
-
-    private static Point generateNonOverlappingPosition() {
-        Random r = new Random();
-        int attempts = 0;
-        while (attempts < 100) { // Prevent infinite loop
-            Point p = new Point(120 + r.nextInt(560), 120 + r.nextInt(360));
-            boolean overlaps = all_nodes.stream()
-                .anyMatch(n -> p.distance(n.position) < 80);
-            if (!overlaps) return p;
-            attempts++;
-        }
-        // Fallback to grid position if random fails
-        int gridSize = (int) Math.ceil(Math.sqrt(uidCounter.get()));
-        int row = uidCounter.get() / gridSize;
-        int col = uidCounter.get() % gridSize;
-        return new Point(150 + col * 100, 150 + row * 100);
-    }
-
-    public static List<Node> all() {
-        return new ArrayList<>(all_nodes); // Return copy to avoid concurrent modification
-    }
-
-    public static Node push(Graph graph) {
-        if (Node.graph == null) { Node.graph = graph; }
-        Node node = new Node();
-        all_nodes.add(node);
-        return node;
-    }
-
-    public static Node pull() {
-        if (all_nodes.isEmpty()) return null;
-        
-        Node removed = all_nodes.remove(all_nodes.size() - 1);
-        removed.interrupt();
-        
-        // Clean up references to removed node
-        all_nodes.forEach(node -> node.clear(removed));
-        
-        if (graph != null) {
-            graph.repaint();
-        }
-        return removed;
-    }
-
-    public void clear(Node removed) {
-        int id = removed.getNodeId();
-        pendingReplies.remove(id);
-        deferredReplies.remove(id);
-    }
-
-    // Getters
-    public int getNodeId() { return nodeId; }
-    public Point getPosition() { return new Point(position); } // Return copy
-    public Color getColor() { return currentState.get().getColor(); }
-
-    private Node findNodeById(int nodeId) {
-        return all_nodes.stream()
-                .filter(node -> node.getNodeId() == nodeId)
-                .findFirst()
-                .orElse(null);
-    }
-
-    private void requestCriticalSection() {
-        if (!currentState.compareAndSet(NodeState.IDLE, NodeState.REQUESTING)) {
-            return; // Already requesting or in CS
-        }
-        
-        long timestamp = clock.incrementAndGet();
-        requestTimestamp.set(timestamp);
-        pendingReplies.clear();
-        
-        log("Requesting Critical Section (timestamp: " + timestamp + ")");
-        
-        // Get current snapshot of nodes
-        List<Node> currentNodes = all();
-        
-        // Add all other nodes to pending replies
-        currentNodes.stream()
-            .filter(node -> node != this)
-            .forEach(node -> pendingReplies.add(node.getNodeId()));
-        
-        // Send requests to all other nodes
-        currentNodes.stream()
-            .filter(node -> node != this)
-            .forEach(this::sendRequest);
-        
-        repaintGraph();
-    }
-
-    private void sendRequest(Node other) {
-        log("Sending REQUEST to Node-" + other.getNodeId());
-        
-        if (graph != null) {
-            graph.showRequest(this, other);
-        }
-        
-        other.handleRequest(nodeId, requestTimestamp.get());
-    }
-
-    public void handleRequest(int fromNodeId, long timestamp) {
-        long newClock = Math.max(clock.get() + 1, timestamp);
-        clock.set(newClock);
-        
-        log("Received REQUEST from Node-" + fromNodeId + " (timestamp: " + timestamp + ")");
-        
-        NodeState state = currentState.get();
-        boolean shouldReplyImmediately = true;
-        
-        if (state == NodeState.REQUESTING) {
-            long myTimestamp = requestTimestamp.get();
-            // Higher priority = lower timestamp, or same timestamp with lower ID
-            if (timestamp < myTimestamp || (timestamp == myTimestamp && fromNodeId < nodeId)) {
-                log("Other node has higher priority, giving up my request");
-                // Give up our request
-                currentState.set(NodeState.IDLE);
-                pendingReplies.clear();
-                repaintGraph();
-            } else {
-                log("We have higher priority, deferring reply");
-                shouldReplyImmediately = false;
-                deferredReplies.offer(fromNodeId);
-            }
-        } else if (state == NodeState.IN_CS) {
-            log("Currently in CS, deferring reply");
-            shouldReplyImmediately = false;
-            deferredReplies.offer(fromNodeId);
-        }
-        
-        if (shouldReplyImmediately) {
-            sendReply(fromNodeId);
-        }
-    }
-
-    private void sendReply(int toNodeId) {
-        Node requester = findNodeById(toNodeId);
-        if (requester != null) {
-            log("Sending REPLY to Node-" + toNodeId);
-            
-            if (graph != null) {
-                graph.showReply(this, requester);
-            }
-            
-            requester.handleReply(nodeId);
-        }
-    }
-
-    public void handleReply(int fromNodeId) {
-        log("Received REPLY from Node-" + fromNodeId);
-        pendingReplies.remove(fromNodeId);
-        
-        log("Pending replies remaining: " + pendingReplies.size());
-        
-        if (pendingReplies.isEmpty() && currentState.get() == NodeState.REQUESTING) {
-            log("All replies received, entering Critical Section");
-            enterCriticalSection();
-        }
-    }
-
-    private void enterCriticalSection() {
-        currentState.set(NodeState.IN_CS);
-        log("ENTERED Critical Section");
-        repaintGraph();
-        
-        // Use a separate thread for CS timing to avoid blocking
-        new Thread(() -> {
-            try {
-                int duration = 2500 + new Random().nextInt(1500); // 2.5-4 seconds
-                log("Will stay in CS for " + duration + "ms");
-                Thread.sleep(duration);
-                
-                if (!isInterrupted()) {
-                    exitCriticalSection();
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }, "CS-Timer-" + nodeId).start();
-    }
-    
-    private void exitCriticalSection() {
-        log("EXITING Critical Section");
-        currentState.set(NodeState.IDLE);
-        
-        // Send all deferred replies
-        Integer deferredNodeId;
-        while ((deferredNodeId = deferredReplies.poll()) != null) {
-            sendReply(deferredNodeId);
-        }
-        
-        repaintGraph();
-        log("Critical Section EXIT complete");
-    }
-    
-    @Override
-    public void run() {
-        Random rand = new Random();
-        log("Node thread started");
-        
-        while (!isInterrupted()) {
-            try {
-                // Variable wait time for more realistic behavior
-                int waitTime = 6000 + rand.nextInt(6000); // 6-12 seconds
-                Thread.sleep(waitTime);
-                
-                // 35% chance to request CS when idle
-                if (currentState.get() == NodeState.IDLE && rand.nextDouble() < 0.35) {
-                    log("Deciding to request Critical Section");
-                    requestCriticalSection();
-                }
-                
-            } catch (InterruptedException e) {
-                log("Node thread interrupted");
-                Thread.currentThread().interrupt();
-                break;
-            }
-        }
-        
-        log("Node thread terminated");
-    }
-    
-    private void repaintGraph() {
-        if (graph != null) {
-            SwingUtilities.invokeLater(() -> graph.repaint());
-        }
-    }
+package com.app;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Node implements Batcher.Sink, FailureDetector.Host {
+    public enum NodeState {
+        IDLE(new Color(46, 204, 113)),           // Modern green
+        REQUESTING(new Color(241, 196, 15)),     // Modern yellow/orange  
+        IN_CS(new Color(231, 76, 60));           // Modern red
+        
+        private final Color color;
+        NodeState(Color color) { this.color = color; }
+        public Color getColor() { return color; }
+    }
+
+    private static final int DRAIN_BATCH = 64;
+    private static final long MAX_WAIT_NANOS = 1_000_000_000L; // Longest single mailbox wait
+    private static final long NEVER_NANOS = Long.MAX_VALUE / 4;  // A delay that cannot overflow nanoTime arithmetic
+    private static final int MIN_SPACING = 80;
+    static final int RADIUS = 30;
+
+    private static final AtomicInteger uidCounter = new AtomicInteger(0);
+    private static final NodeRegistry registry = new NodeRegistry();
+    private static final SpatialGrid spatial = new SpatialGrid(MIN_SPACING);
+    private static volatile Graph graph = null;
+    private static volatile Options options = new Options();
+    private static final Metrics metrics = Metrics.global();
+    private static volatile Workload workload = new Workload(options);
+    private static volatile SafetyChecker checker = new SafetyChecker(options.resources, options.starvationMs, metrics);
+    private static ScheduledFuture<?> starvationScan;
+    private static volatile Transport transport = new MemoryTransport(Node::deliverLocal, () -> registry.snapshot().ids());
+
+    private final int nodeId;
+    private final Point position;
+    private final Resource[] resources;
+    private final Batcher batcher = options.batchWindowMs > 0 ? new Batcher(options.batchSize, this) : null;
+    private final Mailbox<Message> mailbox = new Mailbox<>(options.mailboxCapacity);
+    private final ExecutionMode mode = options.execution;
+    private final Random random = new Random();
+    private final FailureDetector detector;       // null without --heartbeat
+
+    private volatile NodeState[] shownStates;     // Replay replicas only, by resource
+    private volatile boolean running = false;
+    private volatile boolean stopped = false;      // Shut down for good; not yet started is not stopped
+    private Thread thread;                         // PLATFORM and VIRTUAL modes
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(); // SHARED mode
+    private volatile ScheduledFuture<?> nextTick;  // SHARED mode
+    private ScheduledFuture<?> heartbeat;
+    private long nextTickAt;                       // PLATFORM and VIRTUAL modes
+
+    /**
+     * This node's side of one resource: its own protocol instance (so its own
+     * Lamport clock and deferred replies) and the request it is serving.
+     * Requests for different resources never wait on each other.
+     */
+    private final class Resource implements MutualExclusion.Host {
+        final int key;
+        final MutualExclusion protocol;
+        long requestedAt;                  // Node thread only
+        int backlog;                       // Arrivals not yet served; node thread only
+        boolean shared;                    // Mode of the request being served; node thread only
+        volatile long waitingSince;        // 0 when not waiting; read by the starvation scan
+        volatile boolean starvedReported;
+
+        Resource(int key) {
+            this.key = key;
+            this.protocol = MutualExclusion.create(options, nodeId, this);
+        }
+
+        @Override
+        public void send(int toNodeId, Message.Type type, long timestamp) {
+            Node.this.send(toNodeId, type, timestamp, key);
+        }
+
+        @Override
+        public void enterCriticalSection() {
+            Node.this.enterCriticalSection(key);
+        }
+
+        @Override
+        public void stateChanged() {
+            Node.this.stateChanged();
+        }
+
+        @Override
+        public void record(EventLog.Event event, int peer) {
+            switch (event) {
+                case REQUESTED:
+                    metrics.count(Metrics.Counter.REQUESTS);
+                    break;
+                case ENTERED:
+                    long waited = (long) ((System.nanoTime() - requestedAt) * options.timeScale);
+                    metrics.entered(waited);
+                    if (!checker.entered(nodeId, key, shared)) {
+                        record(EventLog.Event.VIOLATION, -1);
+                    }
+                    if (checker.checkWaiting(waited, starvedReported)) {
+                        record(EventLog.Event.STARVED, -1); // Between two scans
+                    }
+                    waitingSince = 0;
+                    starvedReported = false;
+                    if (workload.profile() != Workload.Profile.LEGACY) backlog--;
+                    break;
+                case EXITED:
+                    checker.exited(nodeId, key, shared);
+                    break;
+                case DEFERRED:
+                    metrics.count(Metrics.Counter.DEFERRALS);
+                    break;
+                case GAVE_UP:
+                    metrics.count(Metrics.Counter.GIVE_UPS);
+                    if (workload.profile() == Workload.Profile.LEGACY) {
+                        waitingSince = 0; // The request is dropped
+                    } else {
+                        deliver(Message.retry(nodeId, key)); // Still owed; ask again once this message is handled
+                    }
+                    break;
+                default:
+                    break;
+            }
+            EventLog.get().record(event, nodeId, peer, protocol.getClock(), shared ? EventLog.SHARED : 0, key);
+        }
+
+        @Override
+        public int[] members() {
+            return liveMembers();
+        }
+
+        void record(EventLog.Event event, int peer, Message.Type type) {
+            EventLog.get().record(event, nodeId, peer, protocol.getClock(), type.ordinal(), key);
+        }
+
+        /** Starts a request; a retry after giving up keeps the original request time and mode. */
+        void request(boolean retry) {
+            if (!retry || waitingSince == 0) {
+                requestedAt = System.nanoTime();
+                waitingSince = requestedAt;
+            }
+            // Current membership; the id array is shared, not copied
+            if (retry) {
+                protocol.retry(liveMembers());
+            } else {
+                shared = options.readRatio > 0 && random.nextDouble() < options.readRatio;
+                protocol.request(liveMembers(), shared);
+            }
+        }
+
+        void serveBacklog(boolean retry) {
+            if (backlog > 0 && protocol.getState() == NodeState.IDLE) {
+                request(retry);
+            }
+        }
+    }
+
+    private Node() {
+        this(uidCounter.getAndIncrement());
+    }
+
+    private Node(int nodeId) {
+        this.nodeId = nodeId;
+        this.resources = new Resource[options.resources];
+        for (int r = 0; r < resources.length; r++) {
+            resources[r] = new Resource(r);
+        }
+        this.detector = options.heartbeatMs > 0 ? new FailureDetector(nodeId, options.suspectAfterMs, options.heartbeatMs + options.latencyMaxMs, this) : null;
+        this.position = generateNonOverlappingPosition(nodeId);
+        record(EventLog.Event.NODE_ADDED, -1);
+    }
+
+    /** Applies timing, logging, workload, transport and execution settings to nodes created from now on. */
+    public static synchronized void configure(Options options) {
+        Node.options = options;
+        transport.close();
+        transport = Transport.open(options, Node::deliverLocal, () -> registry.snapshot().ids());
+        if (options.transport == Transport.Kind.NIO) {
+            uidCounter.set(options.process * options.nodes); // Our share of the cluster's ids
+        }
+        Node.workload = new Workload(options);
+        Node.checker = new SafetyChecker(options.resources, options.starvationMs, metrics);
+        EventLog.install(options);
+        if (starvationScan != null) starvationScan.cancel(false);
+        long period = scaledNanos(Math.max(1, options.starvationMs / 4));
+        starvationScan = ExecutionMode.pool().scheduleAtFixedRate(Node::scanForStarvation, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /** Hands {@code message} to the node with that id in this JVM, if there is one. */
+    private static boolean deliverLocal(int toNodeId, Message message) {
+        Node node = registry.get(toNodeId);
+        if (node == null) return false;
+        node.deliver(message);
+        return true;
+    }
+
+    /** The checker watching live nodes for overlapping entries and starved requests. */
+    public static SafetyChecker checker() {
+        return checker;
+    }
+
+    /** The current time in model milliseconds under {@code --time-scale}. */
+    private static long modelMillis() {
+        return (long) (System.nanoTime() / 1e6 * options.timeScale);
+    }
+
+    /** Model milliseconds as wall-clock nanoseconds under {@code --time-scale}. */
+    private static long scaledNanos(long ms) {
+        return (long) Math.min(ms * 1e6 / options.timeScale, NEVER_NANOS);
+    }
+
+    /**
+     * Passes every waiting request through the checker. Runs every quarter of
+     * {@code --starvation}; call it once more when a run ends, so requests
+     * still waiting then are counted however short the run was.
+     */
+    public static void scanForStarvation() {
+        long now = System.nanoTime();
+        for (Node node : all()) {
+            for (Resource resource : node.resources) {
+                long since = resource.waitingSince;
+                if (since != 0 && checker.checkWaiting((long) ((now - since) * options.timeScale), resource.starvedReported)) {
+                    resource.starvedReported = true;
+                    resource.record(EventLog.Event.STARVED, -1);
+                }
+            }
+        }
+    }
+
+    /** Notes a lifecycle event, which concerns the node rather than one resource. */
+    private void record(EventLog.Event event, int peer) {
+        EventLog.get().record(event, nodeId, peer, resources[0].protocol.getClock(), 0);
+    }
+
+    private static Point generateNonOverlappingPosition(int nodeId) {
+        if (options.groupSize > 0) return groupedPosition(nodeId);
+        Random r = new Random();
+        // The original 560x360 field holds about a dozen nodes; grow it with the cluster
+        double spread = Math.max(1, Math.sqrt((registry.snapshot().size() + 1) / 12.0));
+        int width = (int) (560 * spread);
+        int height = (int) (360 * spread);
+        int attempts = 0;
+        while (attempts < 100) { // Prevent infinite loop
+            Point p = new Point(120 + r.nextInt(width), 120 + r.nextInt(height));
+            if (!spatial.anyWithin(p.x, p.y, MIN_SPACING)) return p;
+            attempts++;
+        }
+        // Fallback to grid position if random fails
+        int gridSize = (int) Math.ceil(Math.sqrt(nodeId + 1));
+        int row = (nodeId + 1) / gridSize;
+        int col = (nodeId + 1) % gridSize;
+        return new Point(150 + col * 100, 150 + row * 100);
+    }
+
+    /**
+     * With {@code --group-size}, each group gets a square block of grid slots
+     * and the blocks are tiled about as many across as down, so the graph can
+     * outline them.
+     */
+    private static Point groupedPosition(int nodeId) {
+        int size = options.groupSize;
+        int side = (int) Math.ceil(Math.sqrt(size));
+        int groups = (options.nodes * Math.max(1, options.cluster.size()) + size - 1) / size;
+        int across = (int) Math.ceil(Math.sqrt(groups));
+        int group = nodeId / size, slot = nodeId % size;
+        int block = side * 100 + 80;
+        return new Point(150 + group % across * block + slot % side * 100, 150 + group / across * block + slot / side * 100);
+    }
+
+    /** The node drawn at (x, y), or null; O(1) whatever the cluster size. */
+    public static Node nodeAt(int x, int y) {
+        return spatial.nearest(x, y, RADIUS + 1);
+    }
+
+    /** Current members in join order; an immutable snapshot, so no copy is made. */
+    public static List<Node> all() {
+        return registry.snapshot().members();
+    }
+
+    public static Node push(Graph graph) {
+        if (Node.graph == null) { Node.graph = graph; }
+        Node node = new Node();
+        registry.add(node);
+        spatial.add(node);
+        return node;
+    }
+
+    /**
+     * A display-only node for {@link Replay}: it keeps the id it had in the
+     * trace, is never started, and shows whatever state it is given.
+     */
+    static Node replica(Graph graph, int nodeId) {
+        if (Node.graph == null) { Node.graph = graph; }
+        Node node = new Node(nodeId);
+        node.shownStates = new NodeState[] { NodeState.IDLE };
+        return node;
+    }
+
+    /** Adds or removes a replica from the membership the graph draws. */
+    static void setShown(Node replica, boolean shown) {
+        if (shown) {
+            if (registry.get(replica.nodeId) == null) {
+                registry.add(replica);
+                spatial.add(replica);
+            }
+        } else if (registry.remove(replica)) {
+            spatial.remove(replica);
+        }
+    }
+
+    static boolean isShown(Node replica) {
+        return registry.get(replica.nodeId) == replica;
+    }
+
+    void showState(int resource, NodeState state) {
+        NodeState[] shown = shownStates;
+        if (resource >= shown.length) {
+            int length = shown.length;
+            shown = Arrays.copyOf(shown, resource + 1);
+            Arrays.fill(shown, length, shown.length, NodeState.IDLE);
+        }
+        shown[resource] = state;
+        shownStates = shown;
+    }
+
+    public static Node pull() {
+        Node removed = registry.removeLast();
+        if (removed == null) return null;
+        spatial.remove(removed);
+        removed.deliver(Message.leave(removed.getNodeId())); // Stops on its own thread, leaving the critical section
+        removed.record(EventLog.Event.NODE_REMOVED, -1);
+        
+        // Clean up references to removed node on each node's own thread
+        all().forEach(node -> node.deliver(Message.leave(removed.getNodeId())));
+        
+        if (graph != null) {
+            graph.markDirty();
+        }
+        return removed;
+    }
+
+
+    // Getters
+    public int getNodeId() { return nodeId; }
+    public Point getPosition() { return new Point(position); } // Return copy
+    public int getX() { return position.x; }
+    public int getY() { return position.y; }
+    public Color getColor() { return getState().getColor(); }
+
+    /** State on the resource the graph is filtered to, else the busiest state across all resources. */
+    public NodeState getState() {
+        int filter = graph != null ? graph.resource() : Graph.ALL_RESOURCES;
+        if (filter != Graph.ALL_RESOURCES) return getState(filter);
+        NodeState[] shown = shownStates;
+        int count = shown != null ? shown.length : resources.length;
+        NodeState busiest = NodeState.IDLE;
+        for (int r = 0; r < count && busiest != NodeState.IN_CS; r++) {
+            NodeState state = getState(r);
+            if (state.ordinal() > busiest.ordinal()) busiest = state;
+        }
+        return busiest;
+    }
+
+    public NodeState getState(int resource) {
+        NodeState[] shown = shownStates;
+        if (shown != null) return resource < shown.length ? shown[resource] : NodeState.IDLE;
+        return resource < resources.length ? resources[resource].protocol.getState() : NodeState.IDLE;
+    }
+
+    private Node findNodeById(int nodeId) {
+        return registry.get(nodeId);
+    }
+
+    /**
+     * Queues a message for this node's thread. Never runs protocol code on the
+     * caller's thread, and never waits: callers include shared pool threads
+     * and the transport's I/O thread, which this node may itself need. Past
+     * the mailbox's capacity messages spill into its overflow queue; a node
+     * that has stopped drops them instead.
+     */
+    public void deliver(Message message) {
+        if (!mailbox.offer(message)) {
+            if (stopped) return;
+            mailbox.spill(message);
+        }
+        metrics.queued(mailbox.size());
+        if (mode == ExecutionMode.SHARED) {
+            scheduleDrain();
+        }
+    }
+
+    /** Number of messages waiting to be processed by this node. */
+    public int queueDepth() {
+        return mailbox.size();
+    }
+
+    private void dispatch(Message message) {
+        if (detector != null && message.from != nodeId && message.type != Message.Type.LEAVE
+                && !detector.heard(message.from, modelMillis())) {
+            return; // From a peer we evicted
+        }
+        switch (message.type) {
+            case EXIT:
+                resources[message.resource].protocol.exit();
+                if (workload.profile() == Workload.Profile.CLOSED_LOOP) {
+                    scheduleTick();
+                } else if (workload.isOpenLoop()) {
+                    resources[message.resource].serveBacklog(false);
+                }
+                break;
+            case RETRY:
+                resources[message.resource].serveBacklog(true);
+                break;
+            case LEAVE:
+                if (message.from == nodeId) {
+                    stop();
+                    break;
+                }
+                for (Resource resource : resources) {
+                    resource.protocol.clear(message.from);
+                }
+                break;
+            case HEARTBEAT:
+                if (message.from != nodeId) {
+                    receive(message.from, message.type, message.timestamp, message.resource);
+                } else {
+                    detector.tick(transport.members(), modelMillis()); // Our own timer
+                }
+                break;
+            case TICK:
+                tick();
+                break;
+            case FLUSH:
+                batcher.flush();
+                break;
+            case ENVELOPE:
+                for (long part : message.parts) {
+                    receive(message.from, Batcher.typeOf(part), Batcher.timestampOf(part), Batcher.resourceOf(part));
+                }
+                break;
+            default:
+                receive(message.from, message.type, message.timestamp, message.resource);
+                break;
+        }
+    }
+
+    private void receive(int fromNodeId, Message.Type type, long timestamp, int key) {
+        Resource resource = resources[key];
+        resource.record(EventLog.Event.RECEIVED, fromNodeId, type);
+        if (type.isProtocol()) {
+            resource.protocol.receive(fromNodeId, type, timestamp);
+        } else {
+            detector.receive(fromNodeId, type, timestamp);
+        }
+    }
+
+    /** Membership less the peers our detector evicted; the same array until either changes. */
+    private int[] liveMembers() {
+        return detector != null ? detector.members(transport.members()) : transport.members();
+    }
+
+    @Override
+    public void send(int toNodeId, Message.Type type, long subject) {
+        send(toNodeId, type, subject, 0);
+    }
+
+    @Override
+    public void evict(int evictedNodeId, boolean suspected) {
+        if (evictedNodeId == nodeId) {
+            stop(); // The others have stopped waiting for us
+            return;
+        }
+        if (suspected) {
+            metrics.count(Metrics.Counter.EVICTIONS);
+            record(EventLog.Event.SUSPECTED, evictedNodeId);
+        }
+        for (Resource resource : resources) {
+            resource.protocol.clear(evictedNodeId);
+        }
+    }
+
+    /**
+     * Stops this node as if its process died: it stays in the membership,
+     * so peers only stop waiting for it once their detectors evict it.
+     */
+    public void crash() {
+        metrics.count(Metrics.Counter.CRASHES);
+        deliver(Message.leave(nodeId));
+    }
+
+    /** Stops on our own thread, leaving the critical section as far as the checker is concerned. */
+    private void stop() {
+        for (Resource resource : resources) {
+            if (resource.protocol.getState() == NodeState.IN_CS) checker.exited(nodeId, resource.key, resource.shared);
+            resource.waitingSince = 0;
+        }
+        shutdown();
+    }
+
+    private void send(int toNodeId, Message.Type type, long timestamp, int resource) {
+        if (type == Message.Type.HEARTBEAT) {
+            metrics.count(Metrics.Counter.HEARTBEATS);
+        } else {
+            metrics.count(Metrics.Counter.MESSAGES);
+            if (options.groupSize > 0 && toNodeId / options.groupSize != nodeId / options.groupSize) {
+                metrics.count(Metrics.Counter.INTER_GROUP);
+            }
+        }
+        if (batcher != null) {
+            if (batcher.add(toNodeId, type, timestamp, resource)) {
+                ExecutionMode.pool().schedule(() -> deliver(Message.flush(nodeId)), options.batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+
+        if (!transport.send(toNodeId, Message.of(type, nodeId, timestamp, resource))) return;
+
+        resources[resource].record(EventLog.Event.SENT, toNodeId, type);
+        if (type == Message.Type.HEARTBEAT) return;
+        metrics.count(Metrics.Counter.ENVELOPES);
+        showMessage(toNodeId, type, resource);
+    }
+
+    /** One arrow, log line and delivery for a whole batch. */
+    @Override
+    public void sendEnvelope(int toNodeId, long[] parts) {
+        if (!transport.send(toNodeId, Message.envelope(nodeId, parts))) return;
+
+        Message.Type first = Batcher.typeOf(parts[0]);
+        int resource = Batcher.resourceOf(parts[0]);
+        resources[resource].record(EventLog.Event.SENT, toNodeId, parts.length == 1 ? first : Message.Type.ENVELOPE);
+        metrics.count(Metrics.Counter.ENVELOPES);
+        showMessage(toNodeId, first, resource);
+    }
+
+    /** Draws the arrow if the receiver is on screen here; peers in other processes are not. */
+    private void showMessage(int toNodeId, Message.Type type, int resource) {
+        Node other = graph != null ? findNodeById(toNodeId) : null;
+        if (other != null) {
+            graph.showMessage(this, other, type, resource);
+        }
+    }
+
+    private void enterCriticalSection(int resource) {
+        long duration = scaledNanos(Options.between(random, options.holdMinMs, options.holdMaxMs));
+
+        if (mode == ExecutionMode.SHARED) {
+            ExecutionMode.pool().schedule(() -> deliver(Message.exit(nodeId, resource)), duration, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        // Use a separate thread for CS timing; the exit itself runs on our own thread
+        mode.newThread(() -> {
+            try {
+                Thread.sleep(duration / 1_000_000L, (int) (duration % 1_000_000L));
+                
+                if (running) {
+                    deliver(Message.exit(nodeId, resource));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "CS-Timer-" + nodeId).start();
+    }
+
+    private void stateChanged() {
+        if (graph != null) {
+            graph.markDirty();
+        }
+    }
+
+    public void start() {
+        transport.start();
+        running = true;
+        record(EventLog.Event.NODE_STARTED, -1);
+        scheduleTick();
+        if (detector != null) {
+            long period = scaledNanos(options.heartbeatMs);
+            heartbeat = ExecutionMode.pool().scheduleAtFixedRate(
+                () -> deliver(Message.of(Message.Type.HEARTBEAT, nodeId, 0)), period, period, TimeUnit.NANOSECONDS);
+        }
+        if (mode == ExecutionMode.SHARED) {
+            scheduleDrain();
+        } else {
+            thread = mode.newThread(this::run, "Node-" + nodeId);
+            thread.start();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        stopped = true;
+        record(EventLog.Event.NODE_STOPPED, -1);
+        if (thread != null) {
+            thread.interrupt();
+        }
+        ScheduledFuture<?> tick = nextTick;
+        if (tick != null) {
+            tick.cancel(false);
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+    }
+
+    /** Wall-clock nanoseconds to this node's next arrival, or legacy decision, under the workload. */
+    private long arrivalNanos() {
+        return scaledNanos(workload.nextArrivalMs(nodeId, transport.members().length, modelMillis(), random));
+    }
+
+    /** An arrival for a resource drawn uniformly: legacy nodes roll for a request, others always want one. */
+    private void tick() {
+        Resource resource = resources[resources.length == 1 ? 0 : random.nextInt(resources.length)];
+        if (workload.profile() == Workload.Profile.LEGACY) {
+            if (resource.protocol.getState() == NodeState.IDLE && random.nextDouble() < options.requestProbability) {
+                resource.request(false);
+            }
+            scheduleTick();
+            return;
+        }
+        resource.backlog = workload.isOpenLoop() ? resource.backlog + 1 : 1;
+        resource.serveBacklog(false);
+        if (workload.isOpenLoop()) scheduleTick();
+        else nextTickAt = System.nanoTime() + NEVER_NANOS; // Closed loop: the next arrival is scheduled on exit
+    }
+
+    private void scheduleTick() {
+        if (!running) return;
+        long delay = arrivalNanos();
+        if (mode == ExecutionMode.SHARED) {
+            nextTick = ExecutionMode.pool().schedule(() -> deliver(Message.tick(nodeId)), delay, TimeUnit.NANOSECONDS);
+        } else {
+            nextTickAt = System.nanoTime() + delay;
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            ExecutionMode.pool().execute(this::drainShared);
+        }
+    }
+
+    private void drainShared() {
+        if (running) {
+            mailbox.drain(this::dispatch, DRAIN_BATCH);
+        }
+        drainScheduled.set(false);
+        // A sender may have enqueued after our drain but before the flag cleared
+        if (running && mailbox.size() > 0) {
+            scheduleDrain();
+        }
+    }
+
+    private void run() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                // Handle incoming messages in batches until the next arrival is due
+                long remaining = nextTickAt - System.nanoTime();
+                if (remaining > 0) {
+                    Message message = mailbox.poll(Math.min(remaining, MAX_WAIT_NANOS));
+                    if (message != null) {
+                        dispatch(message);
+                        mailbox.drain(this::dispatch, DRAIN_BATCH);
+                    }
+                    continue;
+                }
+
+                tick();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.app;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cluster membership as a copy-on-write snapshot. Joins and leaves are rare
+ * and rebuild the snapshot under a lock; lookups by id and membership reads
+ * are a single volatile read plus an array access, so the message path never
+ * allocates or contends.
+ */
+public final class NodeRegistry {
+
+    /** Immutable view of the membership at one point in time. */
+    public static final class Snapshot {
+        public final long version;
+        private final Node[] byId;
+        private final int[] ids;
+        private final List<Node> members;
+
+        private Snapshot(long version, Node[] byId, Node[] members) {
+            this.version = version;
+            this.byId = byId;
+            this.ids = new int[members.length];
+            for (int i = 0; i < members.length; i++) {
+                ids[i] = members[i].getNodeId();
+            }
+            this.members = Collections.unmodifiableList(Arrays.asList(members));
+        }
+
+        public Node get(int nodeId) {
+            return nodeId >= 0 && nodeId < byId.length ? byId[nodeId] : null;
+        }
+
+        /** Member ids in join order. Shared, so callers must not modify it. */
+        public int[] ids() { return ids; }
+
+        /** Members in join order. */
+        public List<Node> members() { return members; }
+
+        public int size() { return ids.length; }
+    }
+
+    private volatile Snapshot current = new Snapshot(0, new Node[0], new Node[0]);
+
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    public Node get(int nodeId) {
+        return current.get(nodeId);
+    }
+
+    public synchronized void add(Node node) {
+        Snapshot old = current;
+        int id = node.getNodeId();
+        Node[] byId = Arrays.copyOf(old.byId, Math.max(old.byId.length, id + 1));
+        byId[id] = node;
+        Node[] members = old.members.toArray(new Node[old.size() + 1]);
+        members[old.size()] = node;
+        current = new Snapshot(old.version + 1, byId, members);
+    }
+
+    /** Removes {@code node} wherever it is in join order; returns false if absent. */
+    public synchronized boolean remove(Node node) {
+        Snapshot old = current;
+        int id = node.getNodeId();
+        if (old.get(id) != node) return false;
+        Node[] byId = old.byId.clone();
+        byId[id] = null;
+        Node[] members = old.members.stream().filter(member -> member != node).toArray(Node[]::new);
+        current = new Snapshot(old.version + 1, byId, members);
+        return true;
+    }
+
+    /** Removes and returns the most recently added node, or null if empty. */
+    public synchronized Node removeLast() {
+        Snapshot old = current;
+        if (old.size() == 0) return null;
+        Node removed = old.members.get(old.size() - 1);
+        Node[] byId = old.byId.clone();
+        byId[removed.getNodeId()] = null;
+        Node[] members = old.members.subList(0, old.size() - 1).toArray(new Node[0]);
+        current = new Snapshot(old.version + 1, byId, members);
+        return removed;
+    }
+}
@@ -0,0 +1,204 @@
+package com.app;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line settings shared by the Swing visualizer and the headless
+ * simulator. Arguments are given as {@code --key=value} (or a bare
+ * {@code --flag} for booleans); anything unknown is rejected.
+ */
+public class Options {
+    private static final int CONTROL_MESSAGES = 16; // EXIT, TICK, FLUSH, RETRY and heartbeats a node may have queued
+    private static final int MAX_DEFAULT_MAILBOX = 1024;
+    public boolean headless = false;
+    public String replayFile = null;
+    public int nodes = 10;
+    public long entries = 100_000;
+    public long durationMs = Long.MAX_VALUE;
+    public long seed = 42;
+    public ExecutionMode execution = ExecutionMode.PLATFORM;
+    public int mailboxCapacity = 0;  // 0 sizes it from the cluster; see validate()
+    public MutualExclusion.Engine engine = MutualExclusion.Engine.RICART_AGRAWALA;
+    public boolean roucairolCarvalho = false;
+    public boolean keepRequests = false; // false: give a request up to a higher-priority one
+    public int resources = 1;        // Independent critical sections; every node may contend for each
+    public double readRatio = 0;     // Share of requests made in shared (read) mode
+    public int groupSize = 0;        // Nodes per group; 0 is ungrouped, or about √N for --engine=hierarchical
+    public int heartbeatMs = 0;      // Failure detector interval; 0 runs without one
+    public int suspectAfterMs = 0;   // Silence before a peer is suspected; 0 is four heartbeats
+    public int crashes = 0;          // Nodes to crash, one every crashEveryMs
+    public long crashEveryMs = 10_000;
+    public EventLog.Level logLevel = EventLog.Level.DEBUG;
+    public EventLog.Format logFormat = EventLog.Format.TEXT;
+    public String logFile = null; // Standard output
+    public int logBuffer = 1 << 16;
+    public int batchWindowMs = 0; // 0 sends every message on its own
+    public int batchSize = 32;
+    public int fps = Graph.DEFAULT_FPS;
+    public Workload.Profile workload = Workload.Profile.LEGACY;
+    public double rate = 0;          // Requests per second across the cluster; 0 derives it from the legacy settings
+    public double timeScale = 1;     // Live nodes run this many times faster than the configured times
+    public long starvationMs = 60_000;
+    public Transport.Kind transport = Transport.Kind.MEMORY;
+    public List<InetSocketAddress> cluster = new ArrayList<>(); // One listening address per process
+    public int process = 0;          // Our index in the cluster
+    public InetSocketAddress feed = null;   // Observer to stream events to
+    public int observePort = 0;             // Listen for event feeds instead of running nodes
+    public String metricsFile = null; // CSV export; off by default
+    public int metricsIntervalMs = 1000;
+
+    // Timing, in (virtual) milliseconds; defaults are the visualizer's pacing
+    public int thinkMinMs = 6000;
+    public int thinkMaxMs = 12000;
+    public double requestProbability = 0.35;
+    public int holdMinMs = 2500;
+    public int holdMaxMs = 4000;
+    public int latencyMinMs = 1;
+    public int latencyMaxMs = 5;
+
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String key = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? "true" : arg.substring(eq + 1);
+            options.set(key, value);
+        }
+        options.validate();
+        return options;
+    }
+
+    /** Whether {@code args} set {@code key} (without its dashes), so a tool can pick its own default otherwise. */
+    public static boolean given(String[] args, String key) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && key.equals(eq < 0 ? arg.substring(2) : arg.substring(2, eq))) return true;
+        }
+        return false;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "headless": headless = Boolean.parseBoolean(value); break;
+            case "replay": replayFile = value; break;
+            case "trace":
+                logLevel = EventLog.Level.DEBUG;
+                logFormat = EventLog.Format.BINARY;
+                logFile = value;
+                break;
+            case "nodes": nodes = Integer.parseInt(value); break;
+            case "entries": entries = Long.parseLong(value); break;
+            case "duration": durationMs = Long.parseLong(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "quiet": if (Boolean.parseBoolean(value)) logLevel = EventLog.Level.OFF; break;
+            case "log-level": logLevel = EventLog.Level.valueOf(value.toUpperCase()); break;
+            case "log-format": logFormat = EventLog.Format.valueOf(value.toUpperCase()); break;
+            case "log-file": logFile = value; break;
+            case "log-buffer": logBuffer = Integer.parseInt(value); break;
+            case "exec": execution = ExecutionMode.parse(value); break;
+            case "mailbox": mailboxCapacity = Integer.parseInt(value); break;
+            case "engine": engine = MutualExclusion.Engine.parse(value); break;
+            case "roucairol-carvalho": roucairolCarvalho = Boolean.parseBoolean(value); break;
+            case "keep-requests": keepRequests = Boolean.parseBoolean(value); break;
+            case "resources": resources = Integer.parseInt(value); break;
+            case "read-ratio": readRatio = Double.parseDouble(value); break;
+            case "group-size": groupSize = Integer.parseInt(value); break;
+            case "heartbeat": heartbeatMs = Integer.parseInt(value); break;
+            case "suspect-after": suspectAfterMs = Integer.parseInt(value); break;
+            case "crashes": crashes = Integer.parseInt(value); break;
+            case "crash-every": crashEveryMs = Long.parseLong(value); break;
+            case "batch-window": batchWindowMs = Integer.parseInt(value); break;
+            case "batch-size": batchSize = Integer.parseInt(value); break;
+            case "fps": fps = Integer.parseInt(value); break;
+            case "workload": workload = Workload.Profile.parse(value); break;
+            case "rate": rate = Double.parseDouble(value); break;
+            case "time-scale": timeScale = Double.parseDouble(value); break;
+            case "starvation": starvationMs = Long.parseLong(value); break;
+            case "transport": transport = Transport.Kind.parse(value); break;
+            case "cluster":
+                cluster.clear();
+                for (String address : value.split(",")) cluster.add(address(address));
+                break;
+            case "process": process = Integer.parseInt(value); break;
+            case "feed":
+                feed = address(value);
+                logFormat = EventLog.Format.BINARY;
+                break;
+            case "observe": observePort = Integer.parseInt(value); break;
+            case "metrics": metricsFile = value; break;
+            case "metrics-interval": metricsIntervalMs = Integer.parseInt(value); break;
+            case "think-min": thinkMinMs = Integer.parseInt(value); break;
+            case "think-max": thinkMaxMs = Integer.parseInt(value); break;
+            case "request-probability": requestProbability = Double.parseDouble(value); break;
+            case "hold-min": holdMinMs = Integer.parseInt(value); break;
+            case "hold-max": holdMaxMs = Integer.parseInt(value); break;
+            case "latency-min": latencyMinMs = Integer.parseInt(value); break;
+            case "latency-max": latencyMaxMs = Integer.parseInt(value); break;
+            default: throw new IllegalArgumentException("Unknown option: --" + key);
+        }
+    }
+
+    private void validate() {
+        if (mailboxCapacity != 0 && mailboxCapacity < 16) throw new IllegalArgumentException("--mailbox must be at least 16");
+        if (logFormat == EventLog.Format.BINARY && logFile == null && feed == null) throw new IllegalArgumentException("--log-format=binary needs --log-file");
+        if (transport == Transport.Kind.NIO && cluster.size() < 2) throw new IllegalArgumentException("--transport=nio needs a --cluster of at least two addresses");
+        if (process < 0 || (!cluster.isEmpty() && process >= cluster.size())) throw new IllegalArgumentException("--process must index into --cluster");
+        if (observePort < 0 || observePort > 0xFFFF) throw new IllegalArgumentException("--observe must be a port number");
+        if (logBuffer < 2) throw new IllegalArgumentException("--log-buffer must be at least 2");
+        if (fps < 1 || fps > 1000) throw new IllegalArgumentException("--fps must be between 1 and 1000");
+        if (rate < 0) throw new IllegalArgumentException("--rate must not be negative");
+        if (!(timeScale > 0)) throw new IllegalArgumentException("--time-scale must be positive");
+        if (starvationMs < 1) throw new IllegalArgumentException("--starvation must be at least 1");
+        if (metricsIntervalMs < 1) throw new IllegalArgumentException("--metrics-interval must be at least 1");
+        if (batchWindowMs < 0) throw new IllegalArgumentException("--batch-window must not be negative");
+        if (batchSize < 1 || batchSize > WireFormat.MAX_PARTS) throw new IllegalArgumentException("--batch-size must be between 1 and " + WireFormat.MAX_PARTS);
+        if (resources < 1 || resources > Batcher.MAX_RESOURCES) throw new IllegalArgumentException("--resources must be between 1 and " + Batcher.MAX_RESOURCES);
+        if (!(readRatio >= 0 && readRatio <= 1)) throw new IllegalArgumentException("--read-ratio must be between 0 and 1");
+        if (readRatio > 0 && (engine != MutualExclusion.Engine.RICART_AGRAWALA || roucairolCarvalho)) {
+            throw new IllegalArgumentException("--read-ratio needs --engine=ricart-agrawala without --roucairol-carvalho");
+        }
+        if (nodes < 1) throw new IllegalArgumentException("--nodes must be at least 1");
+        if (groupSize < 0) throw new IllegalArgumentException("--group-size must not be negative");
+        if (heartbeatMs < 0) throw new IllegalArgumentException("--heartbeat must not be negative");
+        // A heartbeat may leave a whole interval late and take the longest latency; an
+        // EVICT for a wrongly suspected node can take as long again to stop it
+        long silence = heartbeatMs + 2L * latencyMaxMs;
+        if (suspectAfterMs == 0) suspectAfterMs = (int) Math.max(4L * heartbeatMs, silence + heartbeatMs);
+        if (heartbeatMs > 0 && suspectAfterMs <= silence) {
+            throw new IllegalArgumentException("--suspect-after must exceed --heartbeat plus twice --latency-max (" + silence + " ms)");
+        }
+        if (crashes < 0 || crashes >= nodes) throw new IllegalArgumentException("--crashes must leave at least one node running");
+        if (crashEveryMs < 1) throw new IllegalArgumentException("--crash-every must be at least 1");
+        if (mailboxCapacity == 0) {
+            // Each peer has about one REQUEST and one REPLY per resource in flight towards
+            // a node, so a ring this size holds its steady-state traffic. Every node
+            // allocates its ring up front, so large clusters stop at the old default and
+            // let bursts spill into the overflow queue instead.
+            long steady = 2L * nodes * Math.max(1, cluster.size()) * resources + CONTROL_MESSAGES;
+            mailboxCapacity = (int) Math.min(steady, MAX_DEFAULT_MAILBOX);
+        }
+        if (engine == MutualExclusion.Engine.HIERARCHICAL && groupSize == 0) {
+            groupSize = (int) Math.ceil(Math.sqrt(nodes * Math.max(1, cluster.size())));
+        }
+        if (thinkMinMs < 0 || thinkMaxMs < thinkMinMs) throw new IllegalArgumentException("Invalid think range");
+        if (holdMinMs < 0 || holdMaxMs < holdMinMs) throw new IllegalArgumentException("Invalid hold range");
+        if (latencyMinMs < 0 || latencyMaxMs < latencyMinMs) throw new IllegalArgumentException("Invalid latency range");
+    }
+
+    /** Parses {@code host:port}. */
+    private static InetSocketAddress address(String value) {
+        int colon = value.lastIndexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Expected host:port, got " + value);
+        return new InetSocketAddress(value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+    }
+
+    /** Uniform draw from [min, max]. */
+    static int between(java.util.Random random, int min, int max) {
+        return max == min ? min : min + random.nextInt(max - min + 1);
+    }
+}
@@ -0,0 +1,275 @@
+package com.app;
+
+import java.awt.FlowLayout;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+
+import com.app.Node.NodeState;
+
+/**
+ * Plays a binary {@link EventLog} trace back through {@link Graph} using
+ * display-only {@link Node#replica replica} nodes. Playback runs on the EDT
+ * at an adjustable multiple of recorded time and can be scrubbed to any
+ * record.
+ * <p>
+ * Opening a trace makes one sequential pass over the mapped file and keeps
+ * every node's state at each {@link #CHECKPOINT}-th record; a seek restores
+ * the nearest earlier checkpoint and applies at most that many records
+ * without drawing them. Heap use grows with nodes times resources times
+ * checkpoints, never with the trace itself.
+ */
+public class Replay {
+    private static final int CHECKPOINT = 1 << 16;
+    private static final int FRAME_MS = 30;
+    private static final int MAX_RECORDS_PER_FRAME = 200_000;
+    private static final int MAX_SIGNALS_PER_FRAME = 256;
+    private static final int SLIDER_STEPS = 10_000;
+    private static final double[] SPEEDS = { 0.1, 0.25, 0.5, 1, 2, 5, 10, 100, 1000 };
+    private static final Message.Type[] TYPES = Message.Type.values();
+
+    // Per-resource, per-node state codes: 0 means not in the cluster, otherwise 1 + NodeState ordinal.
+    // Row 0 also tells whether a node is present; other rows leave a node absent until it uses them.
+    private static final byte ABSENT = 0;
+    private static final NodeState[] STATES = NodeState.values();
+
+    private final TraceReader trace;
+    private final Graph graph;
+    private final TraceReader.Record record = new TraceReader.Record();
+    private final byte[][][] checkpoints;
+    private byte[][] states = { new byte[16] };
+    private Node[] replicas = new Node[16];
+
+    private long position = 0; // Next record to apply
+    private long playhead;     // Trace time in nanoseconds
+    private long lastFrame;
+    private double speed = 1;
+    private final Timer timer;
+
+    private final JButton playButton = new JButton("Play");
+    private final JSlider slider = new JSlider(0, SLIDER_STEPS, 0);
+    private final JLabel timeLabel = new JLabel();
+    private boolean movingSlider = false;
+
+    public Replay(String file, Graph graph) {
+        this.graph = graph;
+        try {
+            this.trace = new TraceReader(Paths.get(file));
+            this.checkpoints = new byte[(int) (trace.size() / CHECKPOINT) + 1][][];
+            index();
+            playhead = trace.size() == 0 ? 0 : trace.read(0, record).time;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open trace " + file, e);
+        }
+        timer = new Timer(FRAME_MS, e -> frame());
+    }
+
+    /** Play/pause, speed and scrub controls for the bottom of the window. */
+    public JPanel controls() {
+        JPanel panel = new JPanel(new FlowLayout());
+        playButton.addActionListener(e -> setPlaying(!timer.isRunning()));
+
+        JComboBox<String> speeds = new JComboBox<>();
+        for (double s : SPEEDS) speeds.addItem(s + "x");
+        speeds.setSelectedIndex(Arrays.binarySearch(SPEEDS, 1));
+        speeds.addActionListener(e -> speed = SPEEDS[speeds.getSelectedIndex()]);
+
+        slider.addChangeListener(e -> {
+            if (!movingSlider) seek(slider.getValue() * trace.size() / SLIDER_STEPS);
+        });
+
+        panel.add(playButton);
+        panel.add(speeds);
+        panel.add(slider);
+        panel.add(timeLabel);
+        JButton fit = new JButton("Fit");
+        fit.addActionListener(e -> graph.fitView());
+        panel.add(fit);
+        updateControls();
+        return panel;
+    }
+
+    /** Resources used in the trace. */
+    public int resources() {
+        return states.length;
+    }
+
+    public void setPlaying(boolean playing) {
+        if (playing) {
+            lastFrame = System.nanoTime();
+            timer.start();
+        } else {
+            timer.stop();
+        }
+        playButton.setText(playing ? "Pause" : "Play");
+    }
+
+    /** Jumps to just before record {@code target}. */
+    public void seek(long target) {
+        target = Math.max(0, Math.min(target, trace.size()));
+        int checkpoint = (int) (target / CHECKPOINT);
+        byte[][] saved = checkpoints[checkpoint];
+        for (int r = 0; r < states.length; r++) {
+            Arrays.fill(states[r], ABSENT);
+            if (r < saved.length) System.arraycopy(saved[r], 0, states[r], 0, saved[r].length);
+        }
+        try {
+            for (position = (long) checkpoint * CHECKPOINT; position < target; position++) {
+                applyState(trace.read(position, record));
+            }
+            if (position < trace.size()) {
+                playhead = trace.read(position, record).time;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        graph.clearSignals();
+        for (int id = 0; id < states[0].length; id++) {
+            showNode(id);
+        }
+        graph.markDirty();
+        updateControls();
+    }
+
+    private void index() throws IOException {
+        for (long i = 0; i < trace.size(); i++) {
+            if (i % CHECKPOINT == 0) checkpoints[(int) (i / CHECKPOINT)] = copyStates();
+            applyState(trace.read(i, record));
+        }
+        if (trace.size() % CHECKPOINT == 0) checkpoints[(int) (trace.size() / CHECKPOINT)] = copyStates();
+        for (byte[] row : states) Arrays.fill(row, ABSENT);
+    }
+
+    private byte[][] copyStates() {
+        byte[][] copy = new byte[states.length][];
+        for (int r = 0; r < states.length; r++) copy[r] = states[r].clone();
+        return copy;
+    }
+
+    private void frame() {
+        long now = System.nanoTime();
+        playhead += (long) ((now - lastFrame) * speed);
+        lastFrame = now;
+
+        int applied = 0;
+        try {
+            while (position < trace.size() && applied < MAX_RECORDS_PER_FRAME) {
+                trace.read(position, record);
+                if (record.time > playhead) break;
+                applyState(record);
+                showNode(record.node);
+                if (record.event == EventLog.Event.SENT && applied < MAX_SIGNALS_PER_FRAME) {
+                    showSignal(record);
+                }
+                position++;
+                applied++;
+            }
+        } catch (IOException e) {
+            setPlaying(false);
+            throw new UncheckedIOException(e);
+        }
+        if (applied == MAX_RECORDS_PER_FRAME) {
+            playhead = record.time; // Too fast to keep up; let recorded time slip instead of skipping
+        }
+        if (position == trace.size()) {
+            setPlaying(false);
+        }
+        if (applied > 0) graph.markDirty();
+        updateControls();
+    }
+
+    /** Advances {@link #states} past one record. */
+    private void applyState(TraceReader.Record r) {
+        switch (r.event) {
+            case SIGNAL:
+            case SIGNAL_RESET:
+                return; // Visualizer noise, not cluster state
+            case NODE_STOPPED: // Crashed or shut down: whatever it held or waited for went with it
+            case NODE_REMOVED:
+                for (int resource = 0; resource < states.length; resource++) set(resource, r.node, ABSENT);
+                return;
+            case REQUESTED:
+                set(r.resource, r.node, code(NodeState.REQUESTING));
+                break;
+            case ENTERED:
+                set(r.resource, r.node, code(NodeState.IN_CS));
+                break;
+            case EXITED:
+            case GAVE_UP:
+                set(r.resource, r.node, code(NodeState.IDLE));
+                break;
+            default:
+                break;
+        }
+        // Any event means the node exists, even if its NODE_ADDED was not traced
+        if (r.node >= states[0].length || states[0][r.node] == ABSENT) set(0, r.node, code(NodeState.IDLE));
+    }
+
+    private static byte code(NodeState state) {
+        return (byte) (state.ordinal() + 1);
+    }
+
+    private void set(int resource, int id, byte state) {
+        if (resource >= states.length) {
+            int rows = states.length;
+            states = Arrays.copyOf(states, resource + 1);
+            for (int r = rows; r < states.length; r++) states[r] = new byte[16];
+        }
+        byte[] row = states[resource];
+        if (id >= row.length) {
+            row = states[resource] = Arrays.copyOf(row, Math.max(id + 1, row.length * 2));
+        }
+        row[id] = state;
+    }
+
+    /** Brings the replica for {@code id} in line with {@link #states}. */
+    private void showNode(int id) {
+        boolean present = id < states[0].length && states[0][id] != ABSENT;
+        Node replica = id < replicas.length ? replicas[id] : null;
+        if (replica == null) {
+            if (!present) return;
+            if (id >= replicas.length) replicas = Arrays.copyOf(replicas, Math.max(id + 1, replicas.length * 2));
+            replica = replicas[id] = Node.replica(graph, id);
+        }
+
+        boolean shown = Node.isShown(replica);
+        if (present) {
+            for (int r = 0; r < states.length; r++) {
+                byte code = id < states[r].length ? states[r][id] : ABSENT;
+                replica.showState(r, code == ABSENT ? NodeState.IDLE : STATES[code - 1]);
+            }
+            if (!shown) {
+                for (Node other : Node.all()) Edge.add(other, replica);
+                Node.setShown(replica, true);
+            }
+        } else if (shown) {
+            Node.setShown(replica, false);
+            Edge.remove(replica);
+        }
+    }
+
+    private void showSignal(TraceReader.Record r) {
+        if (r.peer < 0 || r.peer >= replicas.length) return;
+        Node from = replicas[r.node];
+        Node to = replicas[r.peer];
+        if (from != null && to != null && states[0][r.peer] != ABSENT) {
+            graph.showMessage(from, to, TYPES[r.arg], r.resource);
+        }
+    }
+
+    private void updateControls() {
+        long size = trace.size();
+        movingSlider = true;
+        slider.setValue(size == 0 ? 0 : (int) (position * SLIDER_STEPS / size));
+        movingSlider = false;
+        timeLabel.setText(String.format("t = %.3f s   record %d / %d", playhead / 1e9, position, size));
+    }
+}
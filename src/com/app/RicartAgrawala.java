@@ -0,0 +1,312 @@
+package com.app;
+
+import java.util.Arrays;
+
+import com.app.Node.NodeState;
+
+/**
+ * The Ricart-Agrawala request/reply/defer state machine for a single node.
+ * It knows nothing about threads, timers or Swing; everything it needs from
+ * the outside world goes through a {@link MutualExclusion.Host}, so the same
+ * logic drives both the threaded {@link Node} and the headless
+ * {@link Simulation}.
+ * <p>
+ * With {@code keepPermissions} set this runs the Roucairol-Carvalho
+ * variant: a REPLY is treated as a standing permission that we hold until we
+ * reply to that node in turn, and a request only goes to nodes whose
+ * permission we do not hold. A node that re-enters without contention sends
+ * no messages at all. Under heavy load it costs more instead: peers we skip
+ * never see our timestamp, so their next request can outrank ours and make
+ * us give up. This relies on messages from one sender to one receiver being
+ * delivered in order, which both hosts guarantee.
+ * <p>
+ * By default a requesting node that sees a higher-priority REQUEST gives its
+ * own request up and its host retries later. With {@code keepRequests} set
+ * it behaves as the published algorithm does instead: it replies to the
+ * higher-priority node and keeps waiting for the replies still owed, so the
+ * round trips already spent are not thrown away.
+ * <p>
+ * A REPLY carries the timestamp of the REQUEST it answers, and only replies
+ * to the current request count. A {@link #retry} after giving up asks again
+ * under the original timestamp, so the request keeps its place in line; a
+ * fresh timestamp would put it behind every request seen since, which under
+ * load livelocks. Replies still owed to the request we gave up carry that
+ * same timestamp, so they are counted off per peer and dropped; for that,
+ * a peer that defers both a request and its retry replies to each.
+ * <p>
+ * A request gives way only once: its retry stays in line as with
+ * {@code keepRequests}, or every older request would make each younger one
+ * ask the whole cluster again. The retry only asks the peers whose reply it
+ * no longer holds, those it gave up and those it has replied to since; a
+ * peer that replied and has not been answered still lets us in, just as
+ * under Roucairol-Carvalho.
+ * <p>
+ * A shared request goes out as READ_REQUEST. Two shared requests never
+ * conflict: a reader answers another reader at once, even while it waits or
+ * holds the critical section itself, so readers enter together. A writer
+ * conflicts with everyone and is ordered by timestamp as usual, so a reader
+ * that arrives after a waiting writer is deferred by it and readers cannot
+ * starve writers. Shared mode does not combine with Roucairol-Carvalho: a
+ * reader inside would hand its permission to another reader, which could
+ * later re-enter as a writer without asking.
+ */
+public class RicartAgrawala implements MutualExclusion {
+
+    private final int nodeId;
+    private final Host host;
+    private final boolean keepPermissions;
+    private final boolean keepRequests;
+    private volatile NodeState currentState = NodeState.IDLE;
+    private long clock = 0;
+    private long requestTimestamp = -1;
+    private boolean shared;                        // Mode of the current request
+    private boolean retried;                       // Current request gave way once already
+
+    private final IdSet pendingReplies = new IdSet();
+    private final IdSet deferredReplies = new IdSet();
+    private final IdSet permissions = new IdSet(); // Replies we hold; kept past exit only by Roucairol-Carvalho
+    private long[] requestTimes = new long[16];    // Each peer's latest REQUEST, echoed in our REPLY
+    private int[] staleReplies = new int[16];      // Replies still owed to requests we gave up, by peer
+    private int[] deferredAgain = new int[16];     // Further requests deferred from a peer already deferred
+
+    public RicartAgrawala(int nodeId, Host host) {
+        this(nodeId, host, false);
+    }
+
+    public RicartAgrawala(int nodeId, Host host, boolean keepPermissions) {
+        this(nodeId, host, keepPermissions, false);
+    }
+
+    public RicartAgrawala(int nodeId, Host host, boolean keepPermissions, boolean keepRequests) {
+        this.nodeId = nodeId;
+        this.host = host;
+        this.keepPermissions = keepPermissions;
+        this.keepRequests = keepRequests;
+    }
+
+    @Override public NodeState getState() { return currentState; }
+    @Override public long getClock() { return clock; }
+
+    @Override
+    public boolean request(int[] members) {
+        return request(members, false);
+    }
+
+    @Override
+    public boolean request(int[] members, boolean shared) {
+        if (currentState != NodeState.IDLE) {
+            return false; // Already requesting or in CS
+        }
+        this.shared = shared;
+        retried = false;
+        if (!keepPermissions) permissions.clear(); // Granted our last request, not this one
+        return start(members, ++clock);
+    }
+
+    @Override
+    public boolean retry(int[] members) {
+        if (currentState != NodeState.IDLE) {
+            return false;
+        }
+        retried = true;
+        return start(members, requestTimestamp >= 0 ? requestTimestamp : ++clock);
+    }
+
+    private boolean start(int[] members, long timestamp) {
+        currentState = NodeState.REQUESTING;
+        requestTimestamp = timestamp;
+        pendingReplies.clear();
+
+        host.record(EventLog.Event.REQUESTED, -1);
+
+        // Add all other nodes to pending replies before the first request goes out
+        for (int id : members) {
+            if (id != nodeId && !permissions.contains(id)) pendingReplies.add(id);
+        }
+        if (pendingReplies.isEmpty()) {
+            enter();
+            return true;
+        }
+        Message.Type type = requestType();
+        for (int id = pendingReplies.next(0); id >= 0; id = pendingReplies.next(id + 1)) {
+            host.send(id, type, timestamp);
+        }
+
+        host.stateChanged();
+        return true;
+    }
+
+    @Override
+    public void receive(int fromNodeId, Message.Type type, long timestamp) {
+        switch (type) {
+            case REQUEST:
+                handleRequest(fromNodeId, timestamp);
+                break;
+            case READ_REQUEST:
+                handleRequest(fromNodeId, timestamp, true);
+                break;
+            case REPLY:
+                handleReply(fromNodeId, timestamp);
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected " + type + " from Node-" + fromNodeId);
+        }
+    }
+
+    public void handleRequest(int fromNodeId, long timestamp) {
+        handleRequest(fromNodeId, timestamp, false);
+    }
+
+    /** A REQUEST, or with {@code theirShared} a READ_REQUEST. */
+    public void handleRequest(int fromNodeId, long timestamp, boolean theirShared) {
+        clock = Math.max(clock + 1, timestamp);
+        if (fromNodeId >= requestTimes.length) {
+            requestTimes = Arrays.copyOf(requestTimes, Math.max(fromNodeId + 1, requestTimes.length * 2));
+        }
+        requestTimes[fromNodeId] = timestamp;
+
+        NodeState state = currentState;
+        boolean shouldReplyImmediately = true;
+        boolean conflicts = !(shared && theirShared); // Readers never hold each other up
+
+        if (conflicts && state == NodeState.REQUESTING) {
+            long myTimestamp = requestTimestamp;
+            // Higher priority = lower timestamp, or same timestamp with lower ID
+            if (timestamp < myTimestamp || (timestamp == myTimestamp && fromNodeId < nodeId)) {
+                if (keepRequests || retried) {
+                    // Let it go first but stay in line. Granting hands over a
+                    // permission we held, so ask for it back.
+                    boolean held = permissions.contains(fromNodeId);
+                    reply(fromNodeId);
+                    if (held) {
+                        pendingReplies.add(fromNodeId);
+                        host.send(fromNodeId, requestType(), myTimestamp);
+                    }
+                    return;
+                }
+                host.record(EventLog.Event.GAVE_UP, fromNodeId);
+                // Give up our request; anyone we were holding back only waited on
+                // that request, so they get their replies now like an idle node's
+                currentState = NodeState.IDLE;
+                abandonPending();
+                releaseDeferred();
+                host.stateChanged();
+            } else {
+                host.record(EventLog.Event.DEFERRED, fromNodeId);
+                shouldReplyImmediately = false;
+                defer(fromNodeId);
+            }
+        } else if (conflicts && state == NodeState.IN_CS) {
+            host.record(EventLog.Event.DEFERRED, fromNodeId);
+            shouldReplyImmediately = false;
+            defer(fromNodeId);
+        }
+
+        if (shouldReplyImmediately) {
+            reply(fromNodeId);
+        }
+    }
+
+    private Message.Type requestType() {
+        return shared ? Message.Type.READ_REQUEST : Message.Type.REQUEST;
+    }
+
+    private void reply(int toNodeId) {
+        permissions.remove(toNodeId); // Granting hands our permission over
+        host.send(toNodeId, Message.Type.REPLY, requestTimes[toNodeId]);
+    }
+
+    /** Holds back our REPLY to a request; one REPLY goes out per request deferred. */
+    private void defer(int fromNodeId) {
+        if (deferredReplies.contains(fromNodeId)) {
+            deferredAgain = ensure(deferredAgain, fromNodeId);
+            deferredAgain[fromNodeId]++; // A retry of a request we are still holding back
+        } else {
+            deferredReplies.add(fromNodeId);
+        }
+    }
+
+    /**
+     * Forgets the replies still owed to a request we give up. Their answers
+     * carry the timestamp a retry will, but may predate a REPLY we are about
+     * to send that lets the peer in, so they must not count. Every REQUEST
+     * gets exactly one REPLY, in order, so the next that many from each peer
+     * are the stale ones.
+     */
+    private void abandonPending() {
+        for (int id = pendingReplies.next(0); id >= 0; id = pendingReplies.next(id + 1)) {
+            staleReplies = ensure(staleReplies, id);
+            staleReplies[id]++;
+        }
+        pendingReplies.clear();
+    }
+
+    private static int[] ensure(int[] counts, int id) {
+        return id < counts.length ? counts : Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+    }
+
+    public void handleReply(int fromNodeId, long requestTimestamp) {
+        if (fromNodeId < staleReplies.length && staleReplies[fromNodeId] > 0) {
+            staleReplies[fromNodeId]--; // Answers a request we gave up
+            return;
+        }
+        if (requestTimestamp != this.requestTimestamp) return; // Answers a request from before the last one
+        pendingReplies.remove(fromNodeId);
+        permissions.add(fromNodeId);
+
+        if (pendingReplies.isEmpty() && currentState == NodeState.REQUESTING) {
+            enter();
+        }
+    }
+
+    private void enter() {
+        currentState = NodeState.IN_CS;
+        host.record(EventLog.Event.ENTERED, -1);
+        host.stateChanged();
+        host.enterCriticalSection();
+    }
+
+    @Override
+    public void exit() {
+        host.record(EventLog.Event.EXITED, -1);
+        currentState = NodeState.IDLE;
+
+        // Send all deferred replies
+        releaseDeferred();
+
+        host.stateChanged();
+    }
+
+    private void releaseDeferred() {
+        for (int id = deferredReplies.next(0); id >= 0; id = deferredReplies.next(id + 1)) {
+            reply(id);
+            if (id < deferredAgain.length) {
+                for (; deferredAgain[id] > 0; deferredAgain[id]--) reply(id);
+            }
+        }
+        deferredReplies.clear();
+    }
+
+    /**
+     * Makes {@code joinedNodeId} wait on our current request too, as if it had
+     * been a member when we asked: it gets our REQUEST under the original
+     * timestamp, and we do not enter before it replies.
+     */
+    public void include(int joinedNodeId) {
+        if (joinedNodeId == nodeId || currentState != NodeState.REQUESTING || !pendingReplies.add(joinedNodeId)) return;
+        host.send(joinedNodeId, requestType(), requestTimestamp);
+    }
+
+    @Override
+    public void clear(int removedNodeId) {
+        pendingReplies.remove(removedNodeId);
+        deferredReplies.remove(removedNodeId);
+        permissions.remove(removedNodeId);
+        if (removedNodeId < staleReplies.length) staleReplies[removedNodeId] = 0;
+        if (removedNodeId < deferredAgain.length) deferredAgain[removedNodeId] = 0;
+        // Its reply will never come; it no longer has a say
+        if (pendingReplies.isEmpty() && currentState == NodeState.REQUESTING) {
+            enter();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.app;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches a running cluster for broken mutual exclusion and for starvation.
+ * Nodes report entering and leaving the critical section; since a node
+ * records its exit before releasing anyone, a correct protocol never has two
+ * entries outstanding on one resource, and any overlap is a violation; only
+ * shared (read) entries may overlap each other. Each of {@code --resources}
+ * is checked on its own. Hosts also pass each
+ * waiting request through {@link #checkWaiting} now and then; one that has
+ * waited longer than the starvation limit is reported once. Safe to call
+ * from any thread; the hot path is one atomic add plus recording who
+ * entered, so a violation names a node that was really inside.
+ */
+public final class SafetyChecker {
+    private static final int EXCLUSIVE = 1 << 20; // Occupancy weight of a writer; a reader counts 1
+    private final long starvationNanos;
+    private final Metrics metrics;
+    private final AtomicIntegerArray occupancy;
+    private final AtomicIntegerArray writer;     // Writer inside, or -1
+    private final Set<Integer>[] readers;        // Readers inside, for reports
+    private final AtomicLong violations = new AtomicLong();
+    private final AtomicLong starved = new AtomicLong();
+    private final AtomicLong longestWaitNanos = new AtomicLong();
+    private volatile String firstViolation;
+
+    @SuppressWarnings("unchecked")
+    public SafetyChecker(int resources, long starvationMs, Metrics metrics) {
+        this.starvationNanos = starvationMs * 1_000_000L;
+        this.metrics = metrics;
+        this.occupancy = new AtomicIntegerArray(resources);
+        this.writer = new AtomicIntegerArray(resources);
+        this.readers = new Set[resources];
+        for (int r = 0; r < resources; r++) {
+            writer.set(r, -1);
+            readers[r] = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /** {@code nodeId} entered the critical section of {@code resource}; returns false if that broke mutual exclusion. */
+    public boolean entered(int nodeId, int resource) {
+        return entered(nodeId, resource, false);
+    }
+
+    /** As {@link #entered(int, int)}, in shared mode if {@code shared}. */
+    public boolean entered(int nodeId, int resource, boolean shared) {
+        int weight = shared ? 1 : EXCLUSIVE;
+        int inside = occupancy.addAndGet(resource, weight);
+        int previousWriter = shared ? writer.get(resource) : writer.getAndSet(resource, nodeId);
+        if (shared) readers[resource].add(nodeId);
+        if (inside == weight || (shared && inside < EXCLUSIVE)) return true;
+        if (violations.getAndIncrement() == 0) {
+            firstViolation = "Node-" + nodeId + " entered while " + occupants(inside - weight, previousWriter, resource)
+                + " in the critical section" + (occupancy.length() > 1 ? " of resource " + resource : "");
+        }
+        metrics.count(Metrics.Counter.VIOLATIONS);
+        return false;
+    }
+
+    public void exited(int nodeId, int resource) {
+        exited(nodeId, resource, false);
+    }
+
+    public void exited(int nodeId, int resource, boolean shared) {
+        if (shared) readers[resource].remove(nodeId);
+        else writer.compareAndSet(resource, nodeId, -1);
+        occupancy.addAndGet(resource, shared ? -1 : -EXCLUSIVE);
+    }
+
+    /** Who made up occupancy {@code others}: the writer if there was one, else the readers. */
+    private String occupants(int others, int writerInside, int resource) {
+        if (others >= EXCLUSIVE) {
+            return writerInside >= 0 ? "Node-" + writerInside + " was" : "another writer was"; // It left meanwhile
+        }
+        String named = readers[resource].stream().min(Integer::compare)
+            .map(id -> " Node-" + id).orElse(""); // Empty only if they all left meanwhile
+        return others == 1 ? "reader" + named + " was" : others + " readers" + (named.isEmpty() ? "" : " including" + named) + " were";
+    }
+
+    /**
+     * Checks a request that has been waiting {@code waitedNanos}. Returns true
+     * the first time it crosses the starvation limit, so the caller can report
+     * it once and mark it reported.
+     */
+    public boolean checkWaiting(long waitedNanos, boolean reported) {
+        long longest = longestWaitNanos.get();
+        while (waitedNanos > longest && !longestWaitNanos.compareAndSet(longest, waitedNanos)) {
+            longest = longestWaitNanos.get();
+        }
+        if (reported || waitedNanos < starvationNanos) return false;
+        starved.incrementAndGet();
+        metrics.count(Metrics.Counter.STARVED);
+        return true;
+    }
+
+    public long violations() { return violations.get(); }
+
+    public long starved() { return starved.get(); }
+
+    /** Description of the first violation, or null if there was none. */
+    public String firstViolation() { return firstViolation; }
+
+    @Override
+    public String toString() {
+        String safety = violations() == 0 ? "OK" : violations() + " violations (first: " + firstViolation + ")";
+        return String.format("Mutual exclusion: %s%nStarvation: %d requests waited over %d ms (longest wait %.1f ms)",
+            safety, starved(), starvationNanos / 1_000_000, longestWaitNanos.get() / 1e6);
+    }
+}
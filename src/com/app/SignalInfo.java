@@ -2,18 +2,28 @@ package com.app;
 
 import java.awt.Color;
 
-public class SignalInfo {
-    public Node from;
-    public Node to;
-    public Color signalColor;
+/** One arrow on screen. Immutable, so a snapshot can be painted while nodes replace signals. */
+public final class SignalInfo {
+    public final Node from;
+    public final Node to;
+    public final Color signalColor;
+    public final long expiresAt; // System.nanoTime() deadline
+    final long key;
 
-    public SignalInfo(Node from, Node to, Color signalColor) {
+    public SignalInfo(Node from, Node to, Color signalColor, long expiresAt) {
         this.from = from;
         this.to = to;
         this.signalColor = signalColor;
+        this.expiresAt = expiresAt;
+        this.key = key(from.getNodeId(), to.getNodeId());
     }
 
-    public String getKey() {
-        return from.getNodeId() + "-" + to.getNodeId();
+    /** Directed id pair packed as {@code from << 32 | to}. */
+    public static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    public long getKey() {
+        return key;
     }
 }
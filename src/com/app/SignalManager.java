@@ -1,50 +1,164 @@
 package com.app;
 
 import java.awt.Color;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
+import java.util.function.Predicate;
 
+/**
+ * Active message arrows, keyed by the packed id pair {@code from << 32 | to}
+ * in an open-addressing table. Nodes show and reset signals from their own
+ * threads under the manager's lock; each signal carries its own deadline and
+ * {@link #expire} drops them in one pass, so there are no per-signal timers
+ * and no strings. The painter takes one immutable {@link #snapshot()} per
+ * frame, rebuilt only when the table has changed since the last one.
+ */
 public class SignalManager {
-    private final Map<String, SignalInfo> activeSignals = new ConcurrentHashMap<>();
+    private static final SignalInfo[] NONE = new SignalInfo[0];
+
+    private long[] keys = new long[64];
+    private SignalInfo[] values = new SignalInfo[64];
+    private int size;
+    private long nextExpiry = Long.MAX_VALUE;
+    private boolean changed;
+    private volatile SignalInfo[] snapshot = NONE;
     
     // Modern colors for better visibility
-    private static final Color REQUEST_COLOR = new Color(52, 152, 219);  // Modern blue
-    private static final Color REPLY_COLOR = new Color(46, 204, 113);    // Modern green
+    static final Color REQUEST_COLOR = new Color(52, 152, 219);  // Modern blue
+    static final Color REPLY_COLOR = new Color(46, 204, 113);    // Modern green
+    static final Color CONTROL_COLOR = new Color(155, 89, 182);  // Modern purple
+
+    public void showRequest(Node from, Node to, long expiresAt) {
+        put(new SignalInfo(from, to, REQUEST_COLOR, expiresAt));
+        record(EventLog.Event.SIGNAL, from, to, Message.Type.REQUEST);
+    }
 
-    public void showRequest(Node from, Node to) {
-        String key = getKey(from, to);
-        activeSignals.put(key, new SignalInfo(from, to, REQUEST_COLOR));
-        System.out.println("Signal Manager: Showing REQUEST from Node-" + from.getNodeId() + " to Node-" + to.getNodeId());
+    public void showReply(Node from, Node to, long expiresAt) {
+        put(new SignalInfo(from, to, REPLY_COLOR, expiresAt));
+        record(EventLog.Event.SIGNAL, from, to, Message.Type.REPLY);
     }
 
-    public void showReply(Node from, Node to) {
-        String key = getKey(from, to);
-        activeSignals.put(key, new SignalInfo(from, to, REPLY_COLOR));
-        System.out.println("Signal Manager: Showing REPLY from Node-" + from.getNodeId() + " to Node-" + to.getNodeId());
+    public void showControl(Node from, Node to, Message.Type type, long expiresAt) {
+        put(new SignalInfo(from, to, CONTROL_COLOR, expiresAt));
+        record(EventLog.Event.SIGNAL, from, to, type);
     }
 
     public void resetCommunication(Node from, Node to) {
-        String key1 = getKey(from, to);
-        String key2 = getKey(to, from);
-        activeSignals.remove(key1);
-        activeSignals.remove(key2);
-        System.out.println("Signal Manager: Reset communication between Node-" + from.getNodeId() + " and Node-" + to.getNodeId());
+        synchronized (this) {
+            remove(SignalInfo.key(from.getNodeId(), to.getNodeId()));
+            remove(SignalInfo.key(to.getNodeId(), from.getNodeId()));
+        }
+        EventLog.get().record(EventLog.Event.SIGNAL_RESET, from.getNodeId(), to.getNodeId(), 0, 0);
     }
 
     public void clearNode(Node node) {
-        activeSignals.entrySet().removeIf(entry -> {
-            SignalInfo signal = entry.getValue();
-            return signal.from == node || signal.to == node;
-        });
-        System.out.println("Signal Manager: Cleared all signals for Node-" + node.getNodeId());
+        synchronized (this) {
+            retain(signal -> signal.from != node && signal.to != node);
+        }
+        EventLog.get().record(EventLog.Event.SIGNAL_RESET, node.getNodeId(), -1, 0, 0);
+    }
+
+    /** Drops signals whose time is up; returns true if any were removed. */
+    public synchronized boolean expire(long now) {
+        if (now < nextExpiry) return false;
+        return retain(signal -> signal.expiresAt > now);
+    }
+
+    public synchronized void clear() {
+        if (size == 0) return;
+        Arrays.fill(values, null);
+        size = 0;
+        nextExpiry = Long.MAX_VALUE;
+        changed = true;
+    }
+
+    /**
+     * The active signals as of now. The array is shared and must not be
+     * modified; calls between changes return the same one without locking.
+     */
+    public SignalInfo[] snapshot() {
+        synchronized (this) {
+            if (changed) {
+                SignalInfo[] live = new SignalInfo[size];
+                int n = 0;
+                for (SignalInfo signal : values) {
+                    if (signal != null) live[n++] = signal;
+                }
+                snapshot = live;
+                changed = false;
+            }
+        }
+        return snapshot;
+    }
+
+    private static void record(EventLog.Event event, Node from, Node to, Message.Type type) {
+        EventLog.get().record(event, from.getNodeId(), to.getNodeId(), 0, type.ordinal());
+    }
+
+    // --- Table: linear probing, deletion by backward shift so there are no tombstones ---
+
+    private synchronized void put(SignalInfo signal) {
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        int mask = keys.length - 1;
+        int i = slot(signal.key, mask);
+        while (values[i] != null && keys[i] != signal.key) i = (i + 1) & mask;
+        if (values[i] == null) size++;
+        keys[i] = signal.key;
+        values[i] = signal;
+        nextExpiry = Math.min(nextExpiry, signal.expiresAt);
+        changed = true;
+    }
+
+    private void remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+        if (values[i] == null) return;
+        // Pull later members of the probe chain back over the hole
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        size--;
+        changed = true;
+    }
+
+    /** Keeps the signals {@code keep} accepts; returns true if any were dropped. */
+    private boolean retain(Predicate<SignalInfo> keep) {
+        SignalInfo[] old = values;
+        int before = size;
+        keys = new long[old.length];
+        values = new SignalInfo[old.length];
+        size = 0;
+        nextExpiry = Long.MAX_VALUE;
+        for (SignalInfo signal : old) {
+            if (signal != null && keep.test(signal)) put(signal);
+        }
+        if (size != before) changed = true;
+        return size != before;
     }
 
-    public Map<String, SignalInfo> getActiveSignals() {
-        return new HashMap<>(activeSignals);
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        SignalInfo[] oldValues = values;
+        keys = new long[capacity];
+        values = new SignalInfo[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = slot(oldKeys[j], mask);
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
     }
 
-    private String getKey(Node from, Node to) {
-        return from.getNodeId() + "-" + to.getNodeId();
+    private static int slot(long key, int mask) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32)) & mask;
     }
-}
\ No newline at end of file
+}
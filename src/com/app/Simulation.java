@@ -0,0 +1,510 @@
+package com.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Headless discrete-event run of a {@link MutualExclusion} engine. All nodes
+ * live on the calling thread; time is a virtual millisecond clock that jumps
+ * from one queued event to the next, so a run that would take hours of
+ * wall-clock time in the visualizer finishes in seconds. Given the same
+ * {@link Options} (including the seed) two runs produce identical results.
+ * <p>
+ * Each node's outgoing link is FIFO: a message never overtakes one the same
+ * node sent earlier, whatever latency was drawn for it. With
+ * {@code --batch-window} set, messages leave in per-peer envelopes instead and
+ * the report counts both. With {@code --trace=FILE} (or another
+ * {@code --log-file}) every event is recorded at its virtual time for
+ * {@link Replay}.
+ * <p>
+ * Requests arrive as the {@link Workload} says, each for one of
+ * {@code --resources} drawn uniformly. A {@link SafetyChecker}
+ * watches every entry and, every quarter of {@code --starvation} and once
+ * at the end, every waiting node; the report ends with what it found.
+ * <p>
+ * {@code --crashes} stops that many random nodes, one every
+ * {@code --crash-every} virtual milliseconds; their peers are not told.
+ * With {@code --heartbeat} set each node runs a {@link FailureDetector} to
+ * find out. A run with crashes that goes a whole {@code --starvation}
+ * without an entry while requests wait has stalled, and ends there.
+ */
+public class Simulation {
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long seq;
+        final Message.Type type;
+        final int node;
+        final int from;
+        final long timestamp;
+        final int resource;
+        final long[] parts;
+
+        Event(long time, long seq, Message.Type type, int node, int from, long timestamp, int resource, long[] parts) {
+            this.time = time;
+            this.seq = seq;
+            this.type = type;
+            this.node = node;
+            this.from = from;
+            this.timestamp = timestamp;
+            this.resource = resource;
+            this.parts = parts;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) return Long.compare(time, other.time);
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    /** A simulated node: its resources plus the link and batcher their sends go through. */
+    private final class SimNode implements Batcher.Sink, FailureDetector.Host {
+        final int id;
+        final SimResource[] resources;
+        final Batcher batcher; // null when batching is off
+        final FailureDetector detector; // null without --heartbeat
+        long linkFreeAt;
+        boolean crashed;
+
+        SimNode(int id) {
+            this.id = id;
+            this.resources = new SimResource[options.resources];
+            for (int r = 0; r < resources.length; r++) {
+                resources[r] = new SimResource(this, r);
+            }
+            this.batcher = options.batchWindowMs > 0 ? new Batcher(options.batchSize, this) : null;
+            this.detector = options.heartbeatMs > 0 ? new FailureDetector(id, options.suspectAfterMs, options.heartbeatMs + options.latencyMaxMs, this) : null;
+        }
+
+        private long linkDelay() {
+            linkFreeAt = Math.max(now + latency(), linkFreeAt);
+            return linkFreeAt - now;
+        }
+
+        void send(int toNodeId, Message.Type type, long timestamp, int resource) {
+            resources[resource].record(EventLog.Event.SENT, toNodeId, type.ordinal());
+            boolean heartbeat = type == Message.Type.HEARTBEAT;
+            if (heartbeat) {
+                heartbeats++;
+            } else {
+                messages++;
+                if (options.groupSize > 0 && toNodeId / options.groupSize != id / options.groupSize) interGroup++;
+            }
+            if (batcher == null) {
+                if (!heartbeat) envelopes++;
+                schedule(linkDelay(), type, toNodeId, id, timestamp, resource, null);
+            } else if (batcher.add(toNodeId, type, timestamp, resource)) {
+                schedule(options.batchWindowMs, Message.Type.FLUSH, id, id, 0, 0, null);
+            }
+        }
+
+        @Override
+        public void sendEnvelope(int toNodeId, long[] parts) {
+            envelopes++;
+            schedule(linkDelay(), Message.Type.ENVELOPE, toNodeId, id, 0, 0, parts);
+        }
+
+        /** The resource an arrival wants, drawn uniformly; no draw with a single resource. */
+        SimResource pick() {
+            return resources[resources.length == 1 ? 0 : random.nextInt(resources.length)];
+        }
+
+        void receive(int fromNodeId, Message.Type type, long timestamp, int resource) {
+            SimResource target = resources[resource];
+            target.record(EventLog.Event.RECEIVED, fromNodeId, type.ordinal());
+            if (type.isProtocol()) {
+                target.protocol.receive(fromNodeId, type, timestamp);
+            } else {
+                detector.receive(fromNodeId, type, timestamp);
+            }
+        }
+
+        /** Members less the peers our detector evicted. */
+        int[] liveMembers() {
+            return detector != null ? detector.members(members) : members;
+        }
+
+        @Override
+        public void send(int toNodeId, Message.Type type, long subject) {
+            send(toNodeId, type, subject, 0);
+        }
+
+        @Override
+        public void evict(int nodeId, boolean suspected) {
+            if (nodeId == id) {
+                stop(this); // The others have stopped waiting for us
+                return;
+            }
+            if (suspected) {
+                metrics.count(Metrics.Counter.EVICTIONS);
+                record(EventLog.Event.SUSPECTED, nodeId);
+            }
+            for (SimResource resource : resources) {
+                resource.protocol.clear(nodeId);
+            }
+        }
+
+        /** Notes a lifecycle event, which concerns the node rather than one resource. */
+        void record(EventLog.Event event, int peer) {
+            log.recordAt(now * 1_000_000L, event, id, peer, resources[0].protocol.getClock(), 0, 0);
+        }
+    }
+
+    /** One simulated node's side of one resource: protocol state and the request it is serving. */
+    private final class SimResource implements MutualExclusion.Host {
+        final SimNode node;
+        final int key;
+        final MutualExclusion protocol;
+        long requestedAt;
+        boolean waiting;
+        boolean starvedReported;
+        int backlog; // Arrivals not yet served
+        boolean shared; // Mode of the request being served
+
+        SimResource(SimNode node, int key) {
+            this.node = node;
+            this.key = key;
+            this.protocol = MutualExclusion.create(options, node.id, this);
+        }
+
+        @Override
+        public void send(int toNodeId, Message.Type type, long timestamp) {
+            node.send(toNodeId, type, timestamp, key);
+        }
+
+        @Override
+        public int[] members() {
+            return node.liveMembers();
+        }
+
+        @Override
+        public void enterCriticalSection() {
+            entries++;
+            metrics.entered((now - requestedAt) * 1_000_000L);
+            lastEntryAt = now;
+            fingerprint = fingerprint * 31 + (now * 1_000_003L + node.id);
+            schedule(Options.between(random, options.holdMinMs, options.holdMaxMs), Message.Type.EXIT, node.id, node.id, 0, key, null);
+        }
+
+        @Override public void stateChanged() { }
+        @Override
+        public void record(EventLog.Event event, int peer) {
+            switch (event) {
+                case REQUESTED: metrics.count(Metrics.Counter.REQUESTS); break;
+                case DEFERRED: metrics.count(Metrics.Counter.DEFERRALS); break;
+                case ENTERED:
+                    if (!checker.entered(node.id, key, shared)) record(EventLog.Event.VIOLATION, -1, 0);
+                    if (checker.checkWaiting((now - requestedAt) * 1_000_000L, starvedReported)) {
+                        record(EventLog.Event.STARVED, -1, 0); // Between two scans
+                    }
+                    waiting = false;
+                    starvedReported = false;
+                    if (workload.profile() != Workload.Profile.LEGACY) backlog--;
+                    break;
+                case EXITED:
+                    checker.exited(node.id, key, shared);
+                    break;
+                case GAVE_UP:
+                    metrics.count(Metrics.Counter.GIVE_UPS);
+                    if (workload.profile() == Workload.Profile.LEGACY) {
+                        waiting = false; // The request is dropped
+                    } else {
+                        schedule(0, Message.Type.RETRY, node.id, node.id, 0, key, null); // Still owed; ask again
+                    }
+                    break;
+                default: break;
+            }
+            record(event, peer, shared ? EventLog.SHARED : 0);
+        }
+
+        /** Starts a request; a retry after giving up keeps the original request time and mode. */
+        void request(boolean retry) {
+            if (!retry || !waiting) {
+                requestedAt = now;
+                waiting = true;
+            }
+            if (retry) {
+                protocol.retry(node.liveMembers());
+            } else {
+                // No draw without readers, so seeded runs keep their fingerprint
+                shared = options.readRatio > 0 && random.nextDouble() < options.readRatio;
+                protocol.request(node.liveMembers(), shared);
+            }
+        }
+
+        void serveBacklog(boolean retry) {
+            if (backlog > 0 && protocol.getState() == Node.NodeState.IDLE) {
+                request(retry);
+            }
+        }
+
+        void record(EventLog.Event event, int peer, int arg) {
+            log.recordAt(now * 1_000_000L, event, node.id, peer, protocol.getClock(), arg, key);
+        }
+    }
+
+    /** Outcome of a run. */
+    public static final class Report {
+        public final int nodes;
+        public final int resources;
+        public final long entries;
+        public final long messages;
+        public final long envelopes;
+        public final long events;
+        public final long virtualMs;
+        public final Metrics.Snapshot metrics;
+        public final long wallNanos;
+        public final long fingerprint;
+        public final SafetyChecker checker;
+        public final boolean stalled;
+
+        Report(int nodes, int resources, long entries, long messages, long envelopes, long events, long virtualMs,
+               Metrics.Snapshot metrics, long wallNanos, long fingerprint, SafetyChecker checker, boolean stalled) {
+            this.nodes = nodes;
+            this.resources = resources;
+            this.entries = entries;
+            this.messages = messages;
+            this.envelopes = envelopes;
+            this.events = events;
+            this.virtualMs = virtualMs;
+            this.metrics = metrics;
+            this.wallNanos = wallNanos;
+            this.fingerprint = fingerprint;
+            this.checker = checker;
+            this.stalled = stalled;
+        }
+
+        @Override
+        public String toString() {
+            double wallSeconds = wallNanos / 1e9;
+            return String.format(
+                "Nodes: %d (%d resources)%n" +
+                "CS entries: %d (%.1f per virtual s)%s%n" +
+                "Messages: %d (%.2f per entry, %.0f per virtual s)%n" +
+                "Envelopes: %d (%.2f per entry)%n" +
+                "Events: %d%n" +
+                "%s%n" +
+                "Virtual time: %.1f s%n" +
+                "Wall time: %.3f s (%.0f entries/s, %.0f messages/s, %.0f events/s)%n" +
+                "%s%n" +
+                "Fingerprint: %016x",
+                nodes, resources, entries, virtualMs == 0 ? 0.0 : entries * 1000.0 / virtualMs,
+                stalled ? ", then stalled waiting on crashed nodes" : "", messages, perEntry(messages), virtualMs == 0 ? 0.0 : messages * 1000.0 / virtualMs,
+                envelopes, perEntry(envelopes), events,
+                metrics, virtualMs / 1000.0,
+                wallSeconds, entries / wallSeconds, messages / wallSeconds, events / wallSeconds, checker, fingerprint);
+        }
+
+        private double perEntry(long total) {
+            return entries == 0 ? 0.0 : (double) total / entries;
+        }
+    }
+
+    private final Options options;
+    private final Random random;
+    private final SimNode[] nodes;
+    private final int[] members;
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private final EventLog log;
+    private final Metrics metrics = new Metrics();
+    private final Workload workload;
+    private final SafetyChecker checker;
+
+    private long now = 0;
+    private long seq = 0;
+    private long entries = 0;
+    private long messages = 0;
+    private long interGroup = 0;
+    private long heartbeats = 0;
+    private long envelopes = 0;
+    private long events = 0;
+    private long fingerprint = 17;
+    private long lastEntryAt = 0;
+    private int crashed = 0; // By --crashes
+    private int stopped = 0; // Crashed, or evicted and so stopped
+    private boolean stalled = false;
+
+    public Simulation(Options options) {
+        this.options = options;
+        // Only traced to a file: printing every event would swamp a headless run
+        this.log = options.logFile != null ? EventLog.open(options) : EventLog.get();
+        this.random = new Random(options.seed);
+        this.workload = new Workload(options);
+        this.checker = new SafetyChecker(options.resources, options.starvationMs, metrics);
+        this.nodes = new SimNode[options.nodes];
+        this.members = new int[options.nodes];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new SimNode(i);
+            members[i] = i;
+        }
+    }
+
+    public Report run() {
+        long started = System.nanoTime();
+        for (SimNode node : nodes) {
+            node.record(EventLog.Event.NODE_ADDED, -1);
+            scheduleTick(node.id);
+            if (node.detector != null) schedule(options.heartbeatMs, Message.Type.HEARTBEAT, node.id, node.id, 0, 0, null);
+        }
+
+        long scanEvery = Math.max(1, options.starvationMs / 4);
+        long nextScan = scanEvery;
+        long nextCrash = options.crashes > 0 ? options.crashEveryMs : Long.MAX_VALUE;
+
+        Event event;
+        while (entries < options.entries && !stalled && (event = queue.poll()) != null) {
+            if (event.time > options.durationMs) break;
+            while (nextCrash <= event.time) {
+                now = nextCrash;
+                crashRandomNode();
+                nextCrash = crashed < options.crashes ? nextCrash + options.crashEveryMs : Long.MAX_VALUE;
+            }
+            while (nextScan <= event.time) {
+                now = nextScan;
+                scanForStarvation();
+                nextScan += scanEvery;
+            }
+            if (stalled) break;
+            now = event.time;
+            events++;
+            dispatch(event);
+        }
+        if (!stalled) scanForStarvation(); // Requests still waiting as the run ends
+        if (entries < options.entries && queue.isEmpty() && stopped > 0) stalled = true; // Everyone left waits
+
+        log.close();
+        // Per-message totals are kept in plain fields on this single thread and folded in once
+        metrics.add(Metrics.Counter.MESSAGES, messages);
+        metrics.add(Metrics.Counter.ENVELOPES, envelopes);
+        metrics.add(Metrics.Counter.INTER_GROUP, interGroup);
+        metrics.add(Metrics.Counter.HEARTBEATS, heartbeats);
+        Metrics.Snapshot snapshot = metrics.snapshot(now * 1_000_000L);
+        if (options.metricsFile != null) {
+            writeMetrics(snapshot);
+        }
+        return new Report(nodes.length, options.resources, entries, messages, envelopes, events, now,
+            snapshot, System.nanoTime() - started, fingerprint, checker, stalled);
+    }
+
+    private void crashRandomNode() {
+        crashed++;
+        if (stopped == nodes.length - 1) return; // Keep one running
+        int pick = random.nextInt(nodes.length - stopped);
+        for (SimNode node : nodes) {
+            if (!node.crashed && pick-- == 0) {
+                metrics.count(Metrics.Counter.CRASHES);
+                stop(node);
+                return;
+            }
+        }
+    }
+
+    /** Stops {@code node} for the rest of the run; whatever is still addressed to it is dropped. */
+    private void stop(SimNode node) {
+        node.crashed = true;
+        stopped++;
+        for (SimResource resource : node.resources) {
+            if (resource.protocol.getState() == Node.NodeState.IN_CS) checker.exited(node.id, resource.key, resource.shared);
+            resource.waiting = false;
+        }
+        node.record(EventLog.Event.NODE_STOPPED, -1);
+    }
+
+    private void scanForStarvation() {
+        boolean anyWaiting = false;
+        for (SimNode node : nodes) {
+            for (SimResource resource : node.resources) {
+                anyWaiting |= resource.waiting;
+                if (resource.waiting && checker.checkWaiting((now - resource.requestedAt) * 1_000_000L, resource.starvedReported)) {
+                    resource.starvedReported = true;
+                    resource.record(EventLog.Event.STARVED, -1, 0);
+                }
+            }
+        }
+        stalled = stopped > 0 && anyWaiting && now - lastEntryAt >= options.starvationMs;
+    }
+
+    private void dispatch(Event event) {
+        SimNode node = nodes[event.node];
+        if (node.crashed) return;
+        if (node.detector != null && event.from != event.node && !node.detector.heard(event.from, now)) {
+            return; // From a peer we evicted
+        }
+        SimResource resource = node.resources[event.resource];
+        switch (event.type) {
+            case TICK:
+                SimResource wanted = node.pick();
+                if (workload.profile() == Workload.Profile.LEGACY) {
+                    if (wanted.protocol.getState() == Node.NodeState.IDLE && random.nextDouble() < options.requestProbability) {
+                        wanted.request(false);
+                    }
+                    scheduleTick(event.node);
+                } else if (workload.isOpenLoop()) {
+                    wanted.backlog++;
+                    wanted.serveBacklog(false);
+                    scheduleTick(event.node);
+                } else {
+                    wanted.backlog = 1;
+                    wanted.serveBacklog(false);
+                }
+                break;
+            case EXIT:
+                resource.protocol.exit();
+                if (workload.profile() == Workload.Profile.CLOSED_LOOP) {
+                    scheduleTick(event.node);
+                } else if (workload.isOpenLoop()) {
+                    resource.serveBacklog(false);
+                }
+                break;
+            case RETRY:
+                resource.serveBacklog(true);
+                break;
+            case FLUSH:
+                node.batcher.flush();
+                break;
+            case HEARTBEAT:
+                if (event.from != event.node) {
+                    node.receive(event.from, event.type, event.timestamp, event.resource);
+                } else {
+                    node.detector.tick(members, now); // Our own timer
+                    schedule(options.heartbeatMs, Message.Type.HEARTBEAT, node.id, node.id, 0, 0, null);
+                }
+                break;
+            case ENVELOPE:
+                for (long part : event.parts) {
+                    node.receive(event.from, Batcher.typeOf(part), Batcher.timestampOf(part), Batcher.resourceOf(part));
+                }
+                break;
+            default:
+                node.receive(event.from, event.type, event.timestamp, event.resource);
+                break;
+        }
+    }
+
+    /** One CSV row for the whole run, in the format of {@link Metrics#exportEvery}. */
+    private void writeMetrics(Metrics.Snapshot snapshot) {
+        try {
+            Files.write(Paths.get(options.metricsFile),
+                (Metrics.Snapshot.CSV_HEADER + "\n" + snapshot.toCsv() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write metrics file " + options.metricsFile, e);
+        }
+    }
+
+    private void scheduleTick(int node) {
+        schedule(workload.nextArrivalMs(node, nodes.length, now, random), Message.Type.TICK, node, node, 0, 0, null);
+    }
+
+    private int latency() {
+        return Options.between(random, options.latencyMinMs, options.latencyMaxMs);
+    }
+
+    private void schedule(long delay, Message.Type type, int node, int from, long timestamp, int resource, long[] parts) {
+        queue.add(new Event(now + delay, seq++, type, node, from, timestamp, resource, parts));
+    }
+}
@@ -0,0 +1,69 @@
+package com.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform-grid index of node positions. Placement and hit-testing only look
+ * at the cells around a point, so both stay O(1) however many nodes are on
+ * screen. Synchronized: nodes are placed from whichever thread creates them
+ * and looked up from the EDT.
+ */
+public final class SpatialGrid {
+    private final int cellSize;
+    private final Map<Long, List<Node>> cells = new HashMap<>();
+
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    private long key(int x, int y) {
+        long cx = Math.floorDiv(x, cellSize);
+        long cy = Math.floorDiv(y, cellSize);
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    public synchronized void add(Node node) {
+        cells.computeIfAbsent(key(node.getX(), node.getY()), k -> new ArrayList<>(4)).add(node);
+    }
+
+    public synchronized void remove(Node node) {
+        long key = key(node.getX(), node.getY());
+        List<Node> cell = cells.get(key);
+        if (cell != null && cell.remove(node) && cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    /** True if some indexed node lies strictly closer than {@code distance} to (x, y). */
+    public synchronized boolean anyWithin(int x, int y, int distance) {
+        return nearest(x, y, distance) != null;
+    }
+
+    /** Closest indexed node strictly within {@code distance} of (x, y), or null. */
+    public synchronized Node nearest(int x, int y, int distance) {
+        int reach = (distance + cellSize - 1) / cellSize;
+        long cx = Math.floorDiv(x, cellSize);
+        long cy = Math.floorDiv(y, cellSize);
+        Node best = null;
+        long bestDistance = (long) distance * distance;
+        for (long i = cx - reach; i <= cx + reach; i++) {
+            for (long j = cy - reach; j <= cy + reach; j++) {
+                List<Node> cell = cells.get((i << 32) ^ (j & 0xffffffffL));
+                if (cell == null) continue;
+                for (Node node : cell) {
+                    long dx = node.getX() - x;
+                    long dy = node.getY() - y;
+                    long d = dx * dx + dy * dy;
+                    if (d < bestDistance) {
+                        bestDistance = d;
+                        best = node;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,75 @@
+package com.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to a binary {@link EventLog} trace, in the
+ * {@link WireFormat} event layout. The file is memory-mapped
+ * one window at a time, so a multi-gigabyte trace costs a window of address
+ * space rather than heap, and seeking to any record is constant time.
+ */
+public final class TraceReader implements Closeable {
+    private static final int WINDOW_RECORDS = 1 << 20; // 32 MB per mapping
+
+    /** One decoded record; reused by callers to avoid allocating per event. */
+    public static final class Record {
+        public long time;
+        public long clock;
+        public int node;
+        public int peer;
+        public EventLog.Event event;
+        public int arg;
+        public int resource;
+    }
+
+    private final FileChannel channel;
+    private final long count;
+    private final long startMillis;
+    private MappedByteBuffer window;
+    private long windowStart = -1;
+
+    public TraceReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(WireFormat.HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+        header.flip();
+        try {
+            startMillis = WireFormat.readHeader(header);
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        count = (channel.size() - WireFormat.HEADER_BYTES) / WireFormat.EVENT_BYTES;
+    }
+
+    /** Number of complete records. */
+    public long size() { return count; }
+
+    /** Wall-clock time the trace was started, in epoch milliseconds. */
+    public long startMillis() { return startMillis; }
+
+    /** Decodes record {@code index} into {@code into}. */
+    public Record read(long index, Record into) throws IOException {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+        long start = index - index % WINDOW_RECORDS;
+        if (start != windowStart) {
+            long records = Math.min(WINDOW_RECORDS, count - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY,
+                WireFormat.HEADER_BYTES + start * WireFormat.EVENT_BYTES, records * WireFormat.EVENT_BYTES);
+            windowStart = start;
+        }
+        return WireFormat.getEvent(window, (int) (index - start) * WireFormat.EVENT_BYTES, into);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
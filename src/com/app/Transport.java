@@ -0,0 +1,56 @@
+package com.app;
+
+import java.util.function.Supplier;
+
+/**
+ * How {@link Node}s reach each other. {@code MEMORY} hands messages straight
+ * to the peer's mailbox inside this JVM; {@code NIO} splits a fixed cluster
+ * across processes ({@code --cluster}, {@code --process}) and carries
+ * messages for remote peers over TCP. Either way delivery is asynchronous and
+ * FIFO per pair of nodes.
+ */
+public interface Transport {
+
+    /**
+     * Hands an inbound message to a node hosted by this process. It runs on
+     * the transport's thread, which for {@code NIO} serves every connection,
+     * so it must queue the message and return without ever waiting for the
+     * node to catch up.
+     */
+    interface Receiver {
+        /** Returns false if no such node lives here. */
+        boolean deliver(int toNodeId, Message message);
+    }
+
+    enum Kind {
+        MEMORY, NIO;
+
+        public static Kind parse(String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
+
+    /**
+     * Opens the transport {@code options} ask for. {@code localMembers} lists
+     * the nodes of this JVM, which is the whole cluster for {@code MEMORY}.
+     */
+    static Transport open(Options options, Receiver local, Supplier<int[]> localMembers) {
+        switch (options.transport) {
+            case NIO:
+                return new NioTransport(options, local);
+            default:
+                return new MemoryTransport(local, localMembers);
+        }
+    }
+
+    /** Starts accepting traffic; called once this process's nodes exist. Idempotent. */
+    void start();
+
+    /** Queues {@code message} for {@code toNodeId}; false if that node is unknown. */
+    boolean send(int toNodeId, Message message);
+
+    /** Every node id in the cluster, local or not. Shared, so callers must not modify it. */
+    int[] members();
+
+    void close();
+}
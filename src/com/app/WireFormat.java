@@ -0,0 +1,164 @@
+package com.app;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary layouts of everything that leaves a JVM: message frames on
+ * {@link NioTransport} sockets, and event records in traces and
+ * {@link EventFeed}s. Every field is big-endian at a fixed offset, so
+ * encoders write straight into a (usually pooled, direct) buffer and decoders
+ * read fields in place with absolute gets; nothing is copied or boxed on the
+ * way.
+ * <p>
+ * A message frame is a 24-byte header, followed for an ENVELOPE by its
+ * {@link Batcher} parts:
+ * <pre>
+ *  0  byte  type        Message.Type ordinal
+ *  1  byte  flags       reserved, 0
+ *  2  short count       parts that follow (ENVELOPE only), else 0
+ *  4  int   to
+ *  8  int   from
+ * 12  int   sequence    per connection, counting from 0
+ * 16  long  part        Batcher packing of type, resource and Lamport clock; 0 for an ENVELOPE
+ * 24  long  parts[count]
+ * </pre>
+ * A trace or feed is a 16-byte header (magic {@code RAEV}, version, record
+ * size, start time in epoch milliseconds) followed by 32-byte event records:
+ * <pre>
+ *  0  long  time        ns since start
+ *  8  long  clock
+ * 16  int   node
+ * 20  int   peer
+ * 24  short event       EventLog.Event ordinal
+ * 26  short arg
+ * 28  int   resource    0 in traces from before --resources
+ * </pre>
+ */
+public final class WireFormat {
+    public static final int FRAME_BYTES = 24;
+    public static final int PART_BYTES = 8;
+    /** Largest envelope that still fits one pooled buffer. */
+    public static final int MAX_PARTS = (BufferPool.BUFFER_BYTES - FRAME_BYTES) / PART_BYTES;
+
+    public static final int MAGIC = 0x52414556; // "RAEV"
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int EVENT_BYTES = 32;
+
+    private static final Message.Type[] TYPES = Message.Type.values();
+    private static final EventLog.Event[] EVENTS = EventLog.Event.values();
+
+    private WireFormat() { }
+
+    public static int frameBytes(Message message) {
+        return message.type == Message.Type.ENVELOPE ? FRAME_BYTES + PART_BYTES * message.parts.length : FRAME_BYTES;
+    }
+
+    /** Appends one frame; returns false, writing nothing, if {@code out} lacks room. */
+    public static boolean encode(ByteBuffer out, int toNodeId, Message message, int sequence) {
+        if (out.remaining() < frameBytes(message)) return false;
+        boolean envelope = message.type == Message.Type.ENVELOPE;
+        out.put((byte) message.type.ordinal())
+            .put((byte) 0)
+            .putShort((short) (envelope ? message.parts.length : 0))
+            .putInt(toNodeId)
+            .putInt(message.from)
+            .putInt(sequence)
+            .putLong(envelope ? 0 : Batcher.pack(message.type, message.timestamp, message.resource));
+        if (envelope) {
+            for (long part : message.parts) {
+                out.putLong(part);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands every complete frame between position and limit of {@code in} to
+     * {@code receiver} and compacts what is left, ready for the next read.
+     * {@code sequence} is the number the next frame must carry; returns the
+     * one after the last frame decoded.
+     *
+     * @throws StreamCorruptedException on an unknown type or a sequence gap
+     */
+    public static int decode(ByteBuffer in, int sequence, Transport.Receiver receiver) throws StreamCorruptedException {
+        in.flip();
+        try {
+            while (in.remaining() >= FRAME_BYTES) {
+                int start = in.position();
+                int typeOrdinal = in.get(start);
+                if (typeOrdinal < 0 || typeOrdinal >= TYPES.length) {
+                    throw new StreamCorruptedException("Unknown message type " + typeOrdinal);
+                }
+                Message.Type type = TYPES[typeOrdinal];
+                int count = in.getShort(start + 2) & 0xFFFF;
+                int length = FRAME_BYTES + PART_BYTES * count;
+                if (in.remaining() < length) break;
+                if (in.getInt(start + 12) != sequence) {
+                    throw new StreamCorruptedException("Expected frame " + sequence + ", got " + in.getInt(start + 12));
+                }
+
+                int to = in.getInt(start + 4);
+                int from = in.getInt(start + 8);
+                Message message;
+                if (type == Message.Type.ENVELOPE) {
+                    long[] parts = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        parts[i] = in.getLong(start + FRAME_BYTES + PART_BYTES * i);
+                    }
+                    message = Message.envelope(from, parts);
+                } else {
+                    long part = in.getLong(start + 16);
+                    message = Message.of(type, from, Batcher.timestampOf(part), Batcher.resourceOf(part));
+                }
+                in.position(start + length);
+                sequence++;
+                receiver.deliver(to, message);
+            }
+        } finally {
+            in.compact();
+        }
+        return sequence;
+    }
+
+    public static void putHeader(ByteBuffer out, long startMillis) {
+        out.putInt(MAGIC).putShort(VERSION).putShort((short) EVENT_BYTES).putLong(startMillis);
+    }
+
+    /** Checks the header at the position of {@code in} and returns its start time; {@code in} moves past it. */
+    public static long readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) throw new IOException("Not an event trace");
+        short version = in.getShort();
+        short recordBytes = in.getShort();
+        if (version != VERSION || recordBytes != EVENT_BYTES) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        return in.getLong();
+    }
+
+    public static void putEvent(ByteBuffer out, long time, long clock, int node, int peer, int event, int arg, int resource) {
+        out.putLong(time).putLong(clock).putInt(node).putInt(peer).putShort((short) event).putShort((short) arg).putInt(resource);
+    }
+
+    /**
+     * Decodes the event record at {@code offset} without moving {@code in}.
+     *
+     * @throws StreamCorruptedException on an unknown event
+     */
+    public static TraceReader.Record getEvent(ByteBuffer in, int offset, TraceReader.Record into) throws StreamCorruptedException {
+        int eventOrdinal = in.getShort(offset + 24);
+        if (eventOrdinal < 0 || eventOrdinal >= EVENTS.length) {
+            throw new StreamCorruptedException("Unknown event " + eventOrdinal);
+        }
+        into.time = in.getLong(offset);
+        into.clock = in.getLong(offset + 8);
+        into.node = in.getInt(offset + 16);
+        into.peer = in.getInt(offset + 20);
+        into.event = EVENTS[eventOrdinal];
+        into.arg = in.getShort(offset + 26);
+        into.resource = in.getInt(offset + 28);
+        return into;
+    }
+}
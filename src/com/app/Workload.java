@@ -0,0 +1,108 @@
+package com.app;
+
+import java.util.Random;
+
+/**
+ * When nodes ask for the critical section. {@link Node} and
+ * {@link Simulation} ask it for the gap to a node's next arrival and keep a
+ * per-node backlog of arrivals not yet served, so open-loop profiles keep
+ * their offered load however slow the protocol is:
+ * <ul>
+ * <li>{@code LEGACY}: every think period (uniform in the think range), request
+ *     with {@code --request-probability} if idle; arrivals while busy are lost.
+ * <li>{@code POISSON}: exponential gaps at {@code --rate} requests per second
+ *     across the cluster.
+ * <li>{@code BURSTY}: Poisson at five times the rate for the first fifth of
+ *     every {@link #BURST_PERIOD_MS}, silent for the rest; same mean rate.
+ * <li>{@code HOT_SPOT}: Poisson where every fifth node (ids divisible by 5)
+ *     issues 80% of the requests.
+ * <li>{@code CLOSED_LOOP}: one outstanding request per node; the next one
+ *     arrives a think period after the node leaves the critical section.
+ * </ul>
+ * Without {@code --rate}, open-loop profiles offer the load the legacy
+ * settings would: probability over mean think time per node.
+ */
+public final class Workload {
+    public enum Profile {
+        LEGACY, POISSON, BURSTY, HOT_SPOT, CLOSED_LOOP;
+
+        public static Profile parse(String value) {
+            return valueOf(value.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    static final long BURST_PERIOD_MS = 10_000;
+    private static final double BURST_DUTY = 0.2;
+    private static final int HOT_EVERY = 5;
+    private static final double HOT_SHARE = 0.8;
+
+    private final Profile profile;
+    private final double rate;          // Requests per second across the cluster; 0 derives it per node
+    private final double legacyPerNode; // Requests per second per node implied by the legacy settings
+    private final int thinkMinMs, thinkMaxMs;
+
+    public Workload(Options options) {
+        this.profile = options.workload;
+        this.rate = options.rate;
+        this.thinkMinMs = options.thinkMinMs;
+        this.thinkMaxMs = options.thinkMaxMs;
+        double meanThinkMs = Math.max(1, (options.thinkMinMs + options.thinkMaxMs) / 2.0);
+        this.legacyPerNode = options.requestProbability * 1000.0 / meanThinkMs;
+    }
+
+    public Profile profile() { return profile; }
+
+    /** True if arrivals come on a clock of their own rather than after each exit. */
+    public boolean isOpenLoop() {
+        return profile != Profile.LEGACY && profile != Profile.CLOSED_LOOP;
+    }
+
+    /**
+     * Milliseconds from {@code nowMs} to the next arrival (or legacy tick) of
+     * {@code nodeId} in a cluster of {@code clusterSize}. For CLOSED_LOOP,
+     * called when the node leaves the critical section.
+     */
+    public long nextArrivalMs(int nodeId, int clusterSize, long nowMs, Random random) {
+        switch (profile) {
+            case POISSON:
+            case HOT_SPOT:
+                return exponential(random, perNodeRate(nodeId, clusterSize));
+            case BURSTY:
+                return burst(random, perNodeRate(nodeId, clusterSize) / BURST_DUTY, nowMs);
+            default:
+                return Options.between(random, thinkMinMs, thinkMaxMs);
+        }
+    }
+
+    /** Requests per millisecond for one node. */
+    private double perNodeRate(int nodeId, int clusterSize) {
+        double base = rate > 0 ? rate / Math.max(1, clusterSize) : legacyPerNode;
+        if (profile == Profile.HOT_SPOT) {
+            double hotFraction = 1.0 / HOT_EVERY;
+            base *= nodeId % HOT_EVERY == 0 ? HOT_SHARE / hotFraction : (1 - HOT_SHARE) / (1 - hotFraction);
+        }
+        return base / 1000.0;
+    }
+
+    private static long exponential(Random random, double perMs) {
+        if (perMs <= 0) return Long.MAX_VALUE / 4;
+        return Math.max(1, Math.round(-Math.log(1 - random.nextDouble()) / perMs));
+    }
+
+    /** Next arrival of a process that runs at {@code perMs} during bursts and not at all between them. */
+    private static long burst(Random random, double perMs, long nowMs) {
+        if (perMs <= 0) return Long.MAX_VALUE / 4;
+        long burstMs = (long) (BURST_PERIOD_MS * BURST_DUTY);
+        long t = nowMs;
+        while (true) {
+            long phase = Math.floorMod(t, BURST_PERIOD_MS);
+            if (phase >= burstMs) {
+                t += BURST_PERIOD_MS - phase; // Skip to the next burst; the process is memoryless
+                continue;
+            }
+            long gap = exponential(random, perMs);
+            if (phase + gap < burstMs) return t + gap - nowMs;
+            t += burstMs - phase;
+        }
+    }
+}
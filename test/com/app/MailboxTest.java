@@ -0,0 +1,74 @@
+package com.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class MailboxTest {
+
+    /** What a sender turned away by a full ring does: spill, never wait. */
+    private static void put(Mailbox<Integer> mailbox, int item) {
+        if (!mailbox.offer(item)) mailbox.spill(item);
+    }
+
+    @Test
+    void spilledItemsKeepTheirOrder() {
+        Mailbox<Integer> mailbox = new Mailbox<>(16);
+        int count = mailbox.capacity() * 3;
+        for (int i = 0; i < count; i++) put(mailbox, i);
+        assertEquals(count, mailbox.size());
+
+        // Room on the ring again, but later items must still queue behind the spilled ones
+        for (int i = 0; i < 4; i++) assertEquals(i, (int) mailbox.poll());
+        assertFalse(mailbox.offer(-1));
+        put(mailbox, count);
+
+        for (int i = 4; i <= count; i++) assertEquals(i, (int) mailbox.poll());
+        assertEquals(null, mailbox.poll());
+        assertEquals(0, mailbox.size());
+        assertTrue(mailbox.offer(0)); // Back on the ring once the overflow is empty
+    }
+
+    @Test
+    void eachProducerStaysInOrderAcrossSpills() throws InterruptedException {
+        int producers = 4, items = 500_000;
+        Mailbox<Long> mailbox = new Mailbox<>(16);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < items; i++) {
+                    Long item = producer << 32 | i;
+                    if (!mailbox.offer(item)) mailbox.spill(item);
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        for (long received = 0; received < (long) producers * items; ) {
+            Long item = mailbox.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) (item >>> 32);
+            long expected = next[producer]++;
+            assertEquals(expected, item & 0xFFFFFFFFL, () -> "Producer " + producer + " out of order");
+            received++;
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(null, mailbox.poll());
+    }
+}
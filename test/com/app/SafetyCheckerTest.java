@@ -0,0 +1,38 @@
+package com.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SafetyCheckerTest {
+
+    @Test
+    void writerAfterAReaderLeftNamesOneStillInside() {
+        SafetyChecker checker = new SafetyChecker(1, 1000, new Metrics());
+        assertTrue(checker.entered(1, 0, true));
+        assertTrue(checker.entered(2, 0, true));
+        checker.exited(2, 0, true);
+        assertFalse(checker.entered(3, 0, false));
+        assertEquals("Node-3 entered while reader Node-1 was in the critical section", checker.firstViolation());
+    }
+
+    @Test
+    void readerAfterAWriterNamesTheWriter() {
+        SafetyChecker checker = new SafetyChecker(2, 1000, new Metrics());
+        assertTrue(checker.entered(4, 1));
+        assertTrue(checker.entered(5, 0, true));
+        checker.exited(5, 0, true);
+        assertFalse(checker.entered(6, 1, true));
+        assertEquals("Node-6 entered while Node-4 was in the critical section of resource 1", checker.firstViolation());
+    }
+
+    @Test
+    void writerAmongReadersCountsThem() {
+        SafetyChecker checker = new SafetyChecker(1, 1000, new Metrics());
+        for (int id = 0; id < 3; id++) assertTrue(checker.entered(id, 0, true));
+        assertFalse(checker.entered(7, 0));
+        assertEquals("Node-7 entered while 3 readers including Node-0 were in the critical section", checker.firstViolation());
+    }
+}
@@ -0,0 +1,155 @@
+package com.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Saturated headless runs of every engine and protocol option under the
+ * {@link SafetyChecker}, with and without crashed nodes. Each configuration
+ * runs for a few seeds, and must reach its entries without a violation or,
+ * with crashes, a stall. Runs are seeded, so a failure reproduces from the
+ * command line with the same options.
+ */
+class SafetyTest {
+    private static final long ENTRIES = 5000;
+    private static final int SEEDS = 4;
+    private static final String[] SATURATED = {
+        "--headless", "--quiet", "--nodes=16", "--entries=" + ENTRIES, "--workload=closed-loop",
+        "--think-min=1", "--think-max=5", "--hold-min=1", "--hold-max=3",
+    };
+    private static final String[] CRASHES = { "--heartbeat=20", "--crashes=5", "--crash-every=200" };
+
+    @Test
+    void ricartAgrawala() {
+        assertSafe();
+    }
+
+    @Test
+    void roucairolCarvalho() {
+        assertSafe("--roucairol-carvalho");
+    }
+
+    @Test
+    void keepRequests() {
+        assertSafe("--keep-requests");
+    }
+
+    @Test
+    void maekawa() {
+        assertSafe("--engine=maekawa");
+    }
+
+    @Test
+    void hierarchical() {
+        assertSafe("--engine=hierarchical");
+    }
+
+    /**
+     * A representative evicted while no member of its group is inside: the
+     * other groups' requests in flight must win its successor over before
+     * they enter. Without that, six of these eight seeds let two groups in.
+     */
+    @Test
+    void hierarchicalRepresentativeEvicted() {
+        for (int seed = 1; seed <= 8; seed++) {
+            check(10_000, new String[] {
+                "--headless", "--quiet", "--nodes=16", "--entries=10000", "--workload=closed-loop",
+                "--think-min=1", "--think-max=5", "--hold-min=1", "--hold-max=3", "--engine=hierarchical",
+                "--heartbeat=20", "--crashes=5", "--crash-every=200", "--seed=" + seed,
+            });
+        }
+    }
+
+    /**
+     * Latency up to four heartbeats under crashes every 150 ms. Suspicions
+     * used to cascade round the ring, and a live node wrongly evicted kept
+     * running and entered on its own; only the crashed nodes may go.
+     */
+    @Test
+    void slowLinks() {
+        String[] slow = {
+            "--headless", "--quiet", "--nodes=25", "--entries=2000", "--workload=closed-loop",
+            "--think-min=0", "--think-max=2", "--hold-min=0", "--hold-max=4", "--latency-min=0", "--latency-max=40",
+            "--heartbeat=10", "--crashes=8", "--crash-every=150",
+        };
+        for (String engine : new String[] { "--engine=ricart-agrawala", "--read-ratio=0.5", "--engine=maekawa", "--engine=hierarchical" }) {
+            for (int seed = 1; seed <= SEEDS; seed++) {
+                String[] args = join(slow, new String[] { engine, "--seed=" + seed });
+                Simulation.Report report = check(2000, args);
+                assertEquals(8, report.metrics.get(Metrics.Counter.EVICTIONS), () -> "Live nodes evicted in " + String.join(" ", args));
+            }
+        }
+    }
+
+    /**
+     * Holds far longer than {@code --suspect-after}, so representatives crash
+     * while a member of their group is inside. The successor must not grant
+     * other groups until that member has left; without that, four of these
+     * twelve seeds let two groups in.
+     */
+    @Test
+    void hierarchicalRepresentativeCrashedInside() {
+        for (int seed = 1; seed <= 12; seed++) {
+            check(2000, new String[] {
+                "--headless", "--quiet", "--nodes=16", "--entries=2000", "--workload=closed-loop",
+                "--think-min=1", "--think-max=5", "--hold-min=300", "--hold-max=600", "--engine=hierarchical",
+                "--heartbeat=20", "--crashes=12", "--crash-every=700", "--seed=" + seed,
+            });
+        }
+    }
+
+    @Test
+    void readers() {
+        assertSafe("--read-ratio=0.7");
+    }
+
+    @Test
+    void readersKeepingRequests() {
+        assertSafe("--read-ratio=0.7", "--keep-requests");
+    }
+
+    @Test
+    void resources() {
+        assertSafe("--resources=4");
+    }
+
+    @Test
+    void batched() {
+        assertSafe("--batch-window=3");
+    }
+
+    /** Runs {@code options} over the saturated workload for each seed, then again with crashes. */
+    private static void assertSafe(String... options) {
+        for (int seed = 1; seed <= SEEDS; seed++) {
+            check(join(SATURATED, options, new String[] { "--seed=" + seed }));
+            check(join(SATURATED, options, CRASHES, new String[] { "--seed=" + seed }));
+        }
+    }
+
+    private static void check(String[] args) {
+        check(ENTRIES, args);
+    }
+
+    private static Simulation.Report check(long entries, String[] args) {
+        Simulation.Report report = new Simulation(Options.parse(args)).run();
+        String run = String.join(" ", args);
+        assertEquals(0, report.checker.violations(), () -> report.checker.firstViolation() + " in " + run);
+        assertFalse(report.stalled, () -> "Stalled in " + run);
+        assertEquals(entries, report.entries, () -> "Ran out of events in " + run);
+        return report;
+    }
+
+    private static String[] join(String[]... parts) {
+        int length = 0;
+        for (String[] part : parts) length += part.length;
+        String[] all = new String[length];
+        length = 0;
+        for (String[] part : parts) {
+            System.arraycopy(part, 0, all, length, part.length);
+            length += part.length;
+        }
+        return all;
+    }
+}
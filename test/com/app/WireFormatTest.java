@@ -0,0 +1,121 @@
+package com.app;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WireFormatTest {
+    private static final long MAX_TIMESTAMP = -1L >>> 21; // What a part leaves above resource and type
+    private static final int MAX_RESOURCE = Batcher.MAX_RESOURCES - 1;
+    private static final Message.Type LAST_TYPE = Message.Type.values()[Message.Type.values().length - 1];
+
+    private final List<Integer> to = new ArrayList<>();
+    private final List<Message> received = new ArrayList<>();
+    private final Transport.Receiver receiver = (toNodeId, message) -> {
+        to.add(toNodeId);
+        return received.add(message);
+    };
+
+    @Test
+    void framesRoundTrip() throws StreamCorruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        WireFormat.encode(buffer, 7, Message.of(Message.Type.REQUEST, 3, 42, 5), 0);
+        WireFormat.encode(buffer, Integer.MAX_VALUE, Message.of(LAST_TYPE, Integer.MAX_VALUE, MAX_TIMESTAMP, MAX_RESOURCE), 1);
+
+        assertEquals(2, WireFormat.decode(buffer, 0, receiver));
+        assertEquals(0, buffer.position()); // Nothing left over
+        assertEquals(7, (int) to.get(0));
+        check(received.get(0), Message.Type.REQUEST, 3, 42, 5);
+        assertEquals(Integer.MAX_VALUE, (int) to.get(1));
+        check(received.get(1), LAST_TYPE, Integer.MAX_VALUE, MAX_TIMESTAMP, MAX_RESOURCE);
+    }
+
+    @Test
+    void envelopesRoundTrip() throws StreamCorruptedException {
+        long[] parts = new long[WireFormat.MAX_PARTS];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = Batcher.pack(i % 2 == 0 ? Message.Type.REPLY : LAST_TYPE, MAX_TIMESTAMP - i, MAX_RESOURCE - i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BufferPool.BUFFER_BYTES);
+        WireFormat.encode(buffer, 1, Message.envelope(2, parts), 0);
+        assertEquals(BufferPool.BUFFER_BYTES - buffer.remaining(), WireFormat.frameBytes(Message.envelope(2, parts)));
+
+        assertEquals(1, WireFormat.decode(buffer, 0, receiver));
+        Message envelope = received.get(0);
+        assertEquals(Message.Type.ENVELOPE, envelope.type);
+        assertEquals(2, envelope.from);
+        assertArrayEquals(parts, envelope.parts);
+        assertEquals(LAST_TYPE, Batcher.typeOf(parts[1]));
+        assertEquals(MAX_TIMESTAMP, Batcher.timestampOf(parts[0]));
+        assertEquals(MAX_RESOURCE, Batcher.resourceOf(parts[0]));
+    }
+
+    @Test
+    void partialFramesWaitForTheRest() throws StreamCorruptedException {
+        ByteBuffer whole = ByteBuffer.allocate(64);
+        WireFormat.encode(whole, 1, Message.of(Message.Type.REPLY, 2, 9), 0);
+        whole.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(whole.array(), 0, 10);
+        assertEquals(0, WireFormat.decode(buffer, 0, receiver));
+        assertEquals(10, buffer.position()); // Kept for the next read
+        buffer.put(whole.array(), 10, whole.limit() - 10);
+        assertEquals(1, WireFormat.decode(buffer, 0, receiver));
+        check(received.get(0), Message.Type.REPLY, 2, 9, 0);
+    }
+
+    @Test
+    void sequenceGapIsCorrupt() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireFormat.encode(buffer, 1, Message.of(Message.Type.REQUEST, 2, 1), 0);
+        WireFormat.encode(buffer, 1, Message.of(Message.Type.REQUEST, 2, 2), 2);
+        assertThrows(StreamCorruptedException.class, () -> WireFormat.decode(buffer, 0, receiver));
+        assertEquals(1, received.size()); // The frame before the gap still arrived
+    }
+
+    @Test
+    void unknownTypeIsCorrupt() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        WireFormat.encode(buffer, 1, Message.of(Message.Type.REQUEST, 2, 1), 0);
+        buffer.put(0, (byte) Message.Type.values().length);
+        assertThrows(StreamCorruptedException.class, () -> WireFormat.decode(buffer, 0, receiver));
+    }
+
+    @Test
+    void eventsRoundTrip() throws StreamCorruptedException {
+        EventLog.Event last = EventLog.Event.values()[EventLog.Event.values().length - 1];
+        ByteBuffer buffer = ByteBuffer.allocate(WireFormat.EVENT_BYTES * 2);
+        WireFormat.putEvent(buffer, Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, -1, last.ordinal(), Short.MAX_VALUE, MAX_RESOURCE);
+
+        TraceReader.Record record = WireFormat.getEvent(buffer, 0, new TraceReader.Record());
+        assertEquals(Long.MAX_VALUE, record.time);
+        assertEquals(Long.MAX_VALUE, record.clock);
+        assertEquals(Integer.MAX_VALUE, record.node);
+        assertEquals(-1, record.peer);
+        assertEquals(last, record.event);
+        assertEquals(Short.MAX_VALUE, record.arg);
+        assertEquals(MAX_RESOURCE, record.resource);
+    }
+
+    @Test
+    void unknownEventIsCorrupt() {
+        ByteBuffer buffer = ByteBuffer.allocate(WireFormat.EVENT_BYTES);
+        WireFormat.putEvent(buffer, 0, 0, 1, 2, EventLog.Event.values().length, 0, 0);
+        assertThrows(StreamCorruptedException.class, () -> WireFormat.getEvent(buffer, 0, new TraceReader.Record()));
+    }
+
+    private static void check(Message message, Message.Type type, int from, long timestamp, int resource) {
+        assertEquals(type, message.type);
+        assertEquals(from, message.from);
+        assertEquals(timestamp, message.timestamp);
+        assertEquals(resource, message.resource);
+    }
+}